@@ -1,10 +1,13 @@
 package com.example.mockpayment.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.concurrent.Executor;
 
@@ -12,19 +15,34 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class AsyncConfig {
     
+    // Only webhook calls run here; payment latency is simulated by a timer without holding a thread
+    @Value("${payment.processing.pool.core-size:8}")
+    private int corePoolSize;
+    
+    @Value("${payment.processing.pool.max-size:64}")
+    private int maxPoolSize;
+    
+    @Value("${payment.processing.pool.queue-capacity:10000}")
+    private int queueCapacity;
+    
     @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
     public Executor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
-        executor.setQueueCapacity(100);
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
         executor.setThreadNamePrefix("payment-processor-");
         executor.initialize();
         return executor;
     }
     
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    // spring.threads.virtual.enabled=true (Java 21): one virtual thread per payment, no pool or queue to exhaust
+    @Bean(name = "taskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualThreadTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("payment-processor-");
+        executor.setVirtualThreads(true);
+        return executor;
     }
 }
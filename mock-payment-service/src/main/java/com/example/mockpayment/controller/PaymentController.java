@@ -29,7 +29,7 @@ public class PaymentController {
         response.put("amount", request.getAmount());
         response.put("status", "PENDING");
         
-        // Process payment asynchronously (will call webhook after 3 seconds)
+        // Process payment asynchronously (calls the webhook after the simulated latency)
         paymentProcessingService.processPaymentAsync(
                 request.getOrderId(),
                 paymentId,
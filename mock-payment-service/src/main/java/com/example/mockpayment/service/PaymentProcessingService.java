@@ -1,34 +1,113 @@
 package com.example.mockpayment.service;
 
 import com.example.mockpayment.dto.WebhookRequest;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class PaymentProcessingService {
     
+    public enum LatencyDistribution { FIXED, UNIFORM, EXPONENTIAL, NORMAL }
+    
     private final RestTemplate restTemplate;
+    private final Executor taskExecutor;
+    private final WebhookBatchSender webhookBatchSender;
+    private final Counter singleEvents;
     
     @Value("${payment.webhook.url:http://localhost:8080/api/webhooks/payment}")
     private String webhookUrl;
     
-    @Async
+    @Value("${payment.webhook.batch.enabled:false}")
+    private boolean batchWebhooks;
+    
+    @Value("${payment.simulation.latency.distribution:fixed}")
+    private LatencyDistribution latencyDistribution;
+    
+    @Value("${payment.simulation.latency.mean:3s}")
+    private Duration meanLatency;
+    
+    @Value("${payment.simulation.latency.std-dev:500ms}")
+    private Duration latencyStdDev;
+    
+    @Value("${payment.simulation.latency.min:0ms}")
+    private Duration minLatency;
+    
+    @Value("${payment.simulation.latency.max:30s}")
+    private Duration maxLatency;
+    
+    @Value("${payment.simulation.success-rate:1.0}")
+    private double successRate;
+    
+    @Value("${payment.simulation.timer-threads:1}")
+    private int timerThreads;
+    
+    // Holds pending payments as timer entries, not as sleeping threads
+    private ScheduledThreadPoolExecutor timer;
+    
+    public PaymentProcessingService(RestTemplate restTemplate, Executor taskExecutor,
+                                    WebhookBatchSender webhookBatchSender, MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.taskExecutor = taskExecutor;
+        this.webhookBatchSender = webhookBatchSender;
+        this.singleEvents = Counter.builder("mock.webhook.events").tag("mode", "single").register(meterRegistry);
+    }
+    
+    @PostConstruct
+    void startTimer() {
+        timer = new ScheduledThreadPoolExecutor(timerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+    
+    @PreDestroy
+    void stopTimer() {
+        timer.shutdownNow();
+    }
+    
     public void processPaymentAsync(String orderId, String paymentId, Double amount) {
+        // Decide the outcome up front; the timer only fires the webhook once the simulated latency has passed
+        String status = ThreadLocalRandom.current().nextDouble() < successRate ? "SUCCESS" : "FAILED";
+        long delayMillis = sampleLatencyMillis();
+        
+        timer.schedule(() -> dispatchWebhook(orderId, paymentId, status, amount), delayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private void dispatchWebhook(String orderId, String paymentId, String status, Double amount) {
+        if (batchWebhooks) {
+            webhookBatchSender.submit(new WebhookRequest(orderId, paymentId, status, amount));
+            return;
+        }
+        
+        // The HTTP call runs on the task executor so a slow webhook never stalls the timer
+        try {
+            taskExecutor.execute(() -> sendWebhook(orderId, paymentId, status, amount));
+        } catch (RejectedExecutionException e) {
+            log.warn("Dropped webhook for payment {} (order {}): executor saturated", paymentId, orderId);
+        }
+    }
+    
+    private void sendWebhook(String orderId, String paymentId, String status, Double amount) {
         try {
-            // Wait 3 seconds (simulating payment processing)
-            Thread.sleep(3000);
-            
-            // Simulate successful payment (you can add logic for random failure here)
-            String status = "SUCCESS"; // Can be made random: Math.random() > 0.1 ? "SUCCESS" : "FAILED"
-            
-            // Call webhook
             WebhookRequest webhookRequest = new WebhookRequest();
             webhookRequest.setOrderId(orderId);
             webhookRequest.setPaymentId(paymentId);
@@ -40,12 +119,21 @@ public class PaymentProcessingService {
             HttpEntity<WebhookRequest> entity = new HttpEntity<>(webhookRequest, headers);
             
             restTemplate.postForObject(webhookUrl, entity, Object.class);
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            singleEvents.increment();
         } catch (Exception e) {
-            // Log error (payment processing failed)
-            e.printStackTrace();
+            log.error("Webhook call failed for payment {} (order {})", paymentId, orderId, e);
         }
     }
+    
+    private long sampleLatencyMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double mean = meanLatency.toMillis();
+        double latency = switch (latencyDistribution) {
+            case FIXED -> mean;
+            case UNIFORM -> minLatency.toMillis() + random.nextDouble() * (maxLatency.toMillis() - minLatency.toMillis());
+            case EXPONENTIAL -> -mean * Math.log(1 - random.nextDouble());
+            case NORMAL -> mean + random.nextGaussian() * latencyStdDev.toMillis();
+        };
+        return (long) Math.max(minLatency.toMillis(), Math.min(maxLatency.toMillis(), latency));
+    }
 }
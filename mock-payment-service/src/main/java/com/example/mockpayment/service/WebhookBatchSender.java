@@ -0,0 +1,123 @@
+package com.example.mockpayment.service;
+
+import com.example.mockpayment.dto.WebhookRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Coalesces webhook events and posts them to the batch endpoint once max-size events are
+// queued or max-delay has passed, whichever comes first
+@Slf4j
+@Component
+public class WebhookBatchSender {
+    
+    private final RestTemplate restTemplate;
+    private final Executor taskExecutor;
+    private final Counter batchedEvents;
+    private final Counter batchRequests;
+    
+    private final LinkedBlockingQueue<WebhookRequest> queue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean sizeFlushScheduled = new AtomicBoolean();
+    private ScheduledExecutorService ticker;
+    
+    @Value("${payment.webhook.batch.url:http://localhost:8080/api/webhooks/payment/batch}")
+    private String batchUrl;
+    
+    @Value("${payment.webhook.batch.max-size:500}")
+    private int maxBatchSize;
+    
+    @Value("${payment.webhook.batch.max-delay:200ms}")
+    private Duration maxDelay;
+    
+    public WebhookBatchSender(RestTemplate restTemplate, Executor taskExecutor, MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.taskExecutor = taskExecutor;
+        this.batchedEvents = Counter.builder("mock.webhook.events").tag("mode", "batch").register(meterRegistry);
+        this.batchRequests = Counter.builder("mock.webhook.requests").tag("mode", "batch").register(meterRegistry);
+    }
+    
+    @PostConstruct
+    void startTicker() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "webhook-batch-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::flushOnTimer, maxDelay.toMillis(), maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+        flush(0);
+    }
+    
+    public void submit(WebhookRequest event) {
+        queue.add(event);
+        if (queue.size() >= maxBatchSize && sizeFlushScheduled.compareAndSet(false, true)) {
+            try {
+                taskExecutor.execute(() -> {
+                    try {
+                        flush(maxBatchSize);
+                    } finally {
+                        sizeFlushScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The timer flush picks the events up instead
+                sizeFlushScheduled.set(false);
+            }
+        }
+    }
+    
+    private void flushOnTimer() {
+        try {
+            flush(0);
+        } catch (Exception e) {
+            log.error("Webhook batch flush failed", e);
+        }
+    }
+    
+    // Sends full batches while at least minBatchSize events are queued (0 drains the queue)
+    private void flush(int minBatchSize) {
+        while (!queue.isEmpty() && queue.size() >= minBatchSize) {
+            List<WebhookRequest> batch = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+            queue.drainTo(batch, maxBatchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            send(batch);
+        }
+    }
+    
+    private void send(List<WebhookRequest> batch) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            restTemplate.postForObject(batchUrl, new HttpEntity<>(batch, headers), Object.class);
+            batchRequests.increment();
+            batchedEvents.increment(batch.size());
+        } catch (Exception e) {
+            log.error("Webhook batch of {} events failed", batch.size(), e);
+        }
+    }
+}
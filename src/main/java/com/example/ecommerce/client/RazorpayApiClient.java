@@ -0,0 +1,64 @@
+package com.example.ecommerce.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Talks to the Razorpay REST API over the shared connection pool. One instance serves every request,
+// and the base URL is configurable so it can be pointed at a local stub of the API.
+@Component
+public class RazorpayApiClient {
+    
+    private final RestTemplate restTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    
+    public RazorpayApiClient(PoolingHttpClientConnectionManager connectionManager,
+                             CircuitBreaker razorpayCircuitBreaker,
+                             Bulkhead razorpayBulkhead,
+                             @Value("${payment.razorpay.api.base-url:https://api.razorpay.com/v1}") String baseUrl,
+                             @Value("${payment.razorpay.api.connection-request-timeout:1s}") Duration connectionRequestTimeout,
+                             @Value("${payment.razorpay.api.read-timeout:5s}") Duration readTimeout,
+                             @Value("${payment.razorpay.key_id}") String keyId,
+                             @Value("${payment.razorpay.key_secret}") String keySecret) {
+        // Shares the application's connection pool but with Razorpay's own timeouts
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .build();
+        
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        this.restTemplate.setUriTemplateHandler(new DefaultUriBuilderFactory(baseUrl));
+        this.restTemplate.getInterceptors().add(new BasicAuthenticationInterceptor(keyId, keySecret));
+        this.circuitBreaker = razorpayCircuitBreaker;
+        this.bulkhead = razorpayBulkhead;
+    }
+    
+    // POST /orders; returns the created order (id, amount, currency, receipt, status, ...)
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> createOrder(Map<String, Object> orderRequest) {
+        return call(() -> restTemplate.postForObject("/orders", orderRequest, Map.class));
+    }
+    
+    private <T> T call(Supplier<T> request) {
+        return Bulkhead.decorateSupplier(bulkhead, CircuitBreaker.decorateSupplier(circuitBreaker, request)).get();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ecommerce.client;
+
+import com.example.ecommerce.dto.PaymentRequest;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Non-blocking counterpart of PaymentServiceClient: a caller waiting on the payment service holds
+// no thread, only a pooled connection. Pool metrics are published as reactor.netty.connection.provider.*
+@Component
+@Profile("reactive")
+public class ReactivePaymentServiceClient {
+    
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+    
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    
+    public ReactivePaymentServiceClient(WebClient.Builder webClientBuilder,
+                                        @Value("${payment.mock.service.url:http://localhost:8081}") String mockPaymentServiceUrl,
+                                        @Value("${http.client.reactive.max-connections:500}") int maxConnections,
+                                        @Value("${http.client.reactive.pending-acquire-timeout:2s}") Duration pendingAcquireTimeout,
+                                        @Value("${http.client.connect-timeout:2s}") Duration connectTimeout,
+                                        @Value("${http.client.read-timeout:5s}") Duration readTimeout,
+                                        @Value("${http.client.idle-eviction:30s}") Duration idleEviction) {
+        this.connectionProvider = ConnectionProvider.builder("payment-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(idleEviction)
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        this.webClient = webClientBuilder
+                .baseUrl(mockPaymentServiceUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+    
+    public Mono<Map<String, Object>> createPayment(PaymentRequest request) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("orderId", request.getOrderId());
+        requestBody.put("amount", request.getAmount());
+        
+        return webClient.post()
+                .uri("/payments/create")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(RESPONSE_TYPE);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        connectionProvider.dispose();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.ecommerce.config;
+
+import com.mongodb.MongoException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+@Configuration
+public class MongoConfig {
+    
+    // Makes @Transactional real: multi-document transactions need a replica set (a single-node one is enough).
+    // A commit that fails with UnknownTransactionCommitResult may or may not have been applied; committing again
+    // is safe and settles it, so it is retried here rather than re-running the transaction.
+    @Bean
+    @ConditionalOnProperty(name = "mongodb.transactions.enabled", havingValue = "true", matchIfMissing = true)
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory mongoDatabaseFactory,
+                                                      @Value("${mongodb.transactions.commit-attempts:3}") int commitAttempts) {
+        return new MongoTransactionManager(mongoDatabaseFactory) {
+            @Override
+            protected void doCommit(MongoTransactionObject transactionObject) throws Exception {
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        transactionObject.commitTransaction();
+                        return;
+                    } catch (MongoException e) {
+                        if (attempt >= commitAttempts
+                                || !e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.ecommerce.config;
+
+import com.mongodb.MongoException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Creates the indexes declared with @Indexed/@CompoundIndex on startup and reports unused ones.
+// Under the "strict" profile nothing is created: a missing index fails startup instead.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexVerifier {
+    
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final Environment environment;
+    
+    @Value("${mongodb.indexes.report-unused:true}")
+    private boolean reportUnused;
+    
+    @EventListener(ApplicationStartedEvent.class)
+    public void verifyIndexes() {
+        boolean strict = environment.acceptsProfiles(Profiles.of("strict"));
+        IndexResolver indexResolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        List<String> missing = new ArrayList<>();
+        
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            String collection = entity.getCollection();
+            IndexOperations indexOperations = mongoTemplate.indexOps(collection);
+            Set<String> existing = indexOperations.getIndexInfo().stream()
+                    .map(IndexInfo::getName)
+                    .collect(Collectors.toSet());
+            List<String> embeddedPrefixes = embeddedPrefixes(entity);
+            
+            for (IndexDefinition definition : indexResolver.resolveIndexFor(entity.getTypeInformation())) {
+                // Indexes declared on embedded documents belong to the embedded type's own collection
+                if (definition.getIndexKeys().keySet().stream()
+                        .anyMatch(key -> embeddedPrefixes.stream().anyMatch(key::startsWith))) {
+                    continue;
+                }
+                String name = definition.getIndexOptions().getString("name");
+                if (existing.contains(name)) {
+                    continue;
+                }
+                if (strict) {
+                    missing.add(collection + "." + name);
+                } else {
+                    try {
+                        indexOperations.ensureIndex(definition);
+                        log.info("Created index {} on {}", name, collection);
+                    } catch (DataAccessException e) {
+                        // e.g. existing duplicates block a unique index; keep serving and surface it
+                        log.warn("Could not create index {} on {}: {}", name, collection, e.getMessage());
+                    }
+                }
+            }
+            
+            if (reportUnused) {
+                reportUnusedIndexes(collection);
+            }
+        }
+        
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Missing MongoDB indexes: " + missing);
+        }
+    }
+    
+    private List<String> embeddedPrefixes(MongoPersistentEntity<?> entity) {
+        List<String> prefixes = new ArrayList<>();
+        for (MongoPersistentProperty property : entity) {
+            if (property.isEntity()) {
+                prefixes.add(property.getFieldName() + ".");
+            }
+        }
+        return prefixes;
+    }
+    
+    private void reportUnusedIndexes(String collection) {
+        try {
+            List<Document> stats = mongoTemplate.getCollection(collection)
+                    .aggregate(List.of(new Document("$indexStats", new Document())))
+                    .into(new ArrayList<>());
+            for (Document stat : stats) {
+                String name = stat.getString("name");
+                Document accesses = stat.get("accesses", Document.class);
+                Number ops = accesses != null ? accesses.get("ops", Number.class) : null;
+                if (!"_id_".equals(name) && ops != null && ops.longValue() == 0) {
+                    log.info("Index {} on {} has not been used since {}", name, collection, accesses.get("since"));
+                }
+            }
+        } catch (MongoException e) {
+            // $indexStats needs the indexStats privilege; usage reporting is best effort
+            log.debug("Could not read $indexStats for {}: {}", collection, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.ecommerce.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+
+// Guards calls to Razorpay: the bulkhead caps how many request threads can wait on it at once,
+// and the circuit breaker fails fast while it is degraded instead of letting every call time out
+@Configuration
+public class ResilienceConfig {
+    
+    @Value("${payment.razorpay.circuit-breaker.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+    
+    @Value("${payment.razorpay.circuit-breaker.slow-call-duration:3s}")
+    private Duration slowCallDuration;
+    
+    @Value("${payment.razorpay.circuit-breaker.sliding-window-size:20}")
+    private int slidingWindowSize;
+    
+    @Value("${payment.razorpay.circuit-breaker.open-duration:30s}")
+    private Duration openDuration;
+    
+    @Value("${payment.razorpay.bulkhead.max-concurrent-calls:20}")
+    private int maxConcurrentCalls;
+    
+    @Value("${payment.razorpay.bulkhead.max-wait:100ms}")
+    private Duration maxWait;
+    
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry() {
+        return CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(Math.min(10, slidingWindowSize))
+                .waitDurationInOpenState(openDuration)
+                .permittedNumberOfCallsInHalfOpenState(3)
+                // A 4xx means the request was wrong, not that Razorpay is unhealthy
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build());
+    }
+    
+    @Bean
+    public BulkheadRegistry bulkheadRegistry() {
+        return BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+    }
+    
+    @Bean
+    public CircuitBreaker razorpayCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return circuitBreakerRegistry.circuitBreaker("razorpay");
+    }
+    
+    @Bean
+    public Bulkhead razorpayBulkhead(BulkheadRegistry bulkheadRegistry) {
+        return bulkheadRegistry.bulkhead("razorpay");
+    }
+    
+    // Publishes resilience4j.circuitbreaker.* and resilience4j.bulkhead.* on /actuator/metrics
+    @Bean
+    public MeterBinder circuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry);
+    }
+    
+    @Bean
+    public MeterBinder bulkheadMetrics(BulkheadRegistry bulkheadRegistry) {
+        return TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry);
+    }
+}
@@ -2,21 +2,21 @@ package com.example.ecommerce.controller;
 
 import com.example.ecommerce.dto.CreateOrderRequest;
 import com.example.ecommerce.model.Order;
-import com.example.ecommerce.model.Payment;
 import com.example.ecommerce.service.OrderService;
 import com.example.ecommerce.service.PaymentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/orders")
+@Profile("!reactive")
 @RequiredArgsConstructor
 public class OrderController {
     
@@ -26,34 +26,25 @@ public class OrderController {
     @PostMapping
     public ResponseEntity<Map<String, Object>> createOrder(@Valid @RequestBody CreateOrderRequest request) {
         Map<String, Object> orderDetails = orderService.getOrderDetails(
-                orderService.createOrder(request).getId()
+                orderService.createOrder(request)
         );
         return ResponseEntity.status(HttpStatus.CREATED).body(orderDetails);
     }
     
     @GetMapping("/{orderId}")
     public ResponseEntity<Map<String, Object>> getOrder(@PathVariable String orderId) {
-        Map<String, Object> orderDetails = orderService.getOrderDetails(orderId);
-        
-        // Add payment information if available
-        Payment payment = paymentService.getPaymentByOrderId(orderId);
-        if (payment != null) {
-            Map<String, Object> paymentInfo = new HashMap<>();
-            paymentInfo.put("id", payment.getId());
-            paymentInfo.put("status", payment.getStatus().toString());
-            paymentInfo.put("amount", payment.getAmount());
-            orderDetails.put("payment", paymentInfo);
-        } else {
-            orderDetails.put("payment", new HashMap<>());
-        }
-        
-        return ResponseEntity.ok(orderDetails);
+        return ResponseEntity.ok(paymentService.getOrderWithPayment(orderId));
     }
     
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Map<String, Object>>> getOrderHistory(@PathVariable String userId) {
-        List<Map<String, Object>> orders = orderService.getOrderHistory(userId);
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<Map<String, Object>> getOrderHistory(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "full") String view) {
+        Map<String, Object> history = orderService.getOrderHistory(
+                userId, cursor, limit, "summary".equalsIgnoreCase(view));
+        return ResponseEntity.ok(history);
     }
     
     @PostMapping("/{orderId}/cancel")
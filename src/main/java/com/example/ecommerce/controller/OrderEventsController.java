@@ -0,0 +1,24 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.service.OrderEventHub;
+import com.example.ecommerce.service.PaymentService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Server-Sent Events instead of polling GET /api/orders/{orderId}: the first event is the current order
+// (same shape as that response), then every order and payment status change until the order is final
+@RestController
+@RequestMapping("/api/orders")
+@RequiredArgsConstructor
+public class OrderEventsController {
+    
+    private final OrderEventHub orderEventHub;
+    private final PaymentService paymentService;
+    
+    @GetMapping(value = "/{orderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderEvents(@PathVariable String orderId) {
+        return orderEventHub.subscribe(orderId, () -> paymentService.getOrderWithPayment(orderId));
+    }
+}
@@ -4,6 +4,7 @@ import com.example.ecommerce.dto.PaymentRequest;
 import com.example.ecommerce.service.PaymentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +13,7 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/payments")
+@Profile("!reactive")
 @RequiredArgsConstructor
 public class PaymentController {
     
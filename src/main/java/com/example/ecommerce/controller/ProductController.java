@@ -1,22 +1,38 @@
 package com.example.ecommerce.controller;
 
 import com.example.ecommerce.dto.ProductRequest;
+import com.example.ecommerce.dto.ProductSummary;
 import com.example.ecommerce.model.Product;
+import com.example.ecommerce.service.ProductImportService;
 import com.example.ecommerce.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
 @RequiredArgsConstructor
 public class ProductController {
     
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final ObjectMapper objectMapper;
     
     @PostMapping
     public ResponseEntity<Product> createProduct(@Valid @RequestBody ProductRequest request) {
@@ -24,15 +40,54 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdProduct);
     }
     
+    // Streams an NDJSON or CSV upload into the catalog; rows are upserted by id and failures reported per row
+    @PostMapping(value = "/bulk", consumes = {APPLICATION_NDJSON, ProductImportService.TEXT_CSV})
+    public ResponseEntity<Map<String, Object>> importProducts(
+            InputStream body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType) {
+        return ResponseEntity.ok(productImportService.importProducts(body, contentType));
+    }
+    
+    // Splits the product's stock over count inventory_shards documents for high-volume sales
+    @PostMapping("/{productId}/inventory-shards")
+    public ResponseEntity<Product> enableInventorySharding(
+            @PathVariable String productId,
+            @RequestParam(defaultValue = "8") int count) {
+        return ResponseEntity.ok(productService.enableInventorySharding(productId, count));
+    }
+    
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<Map<String, Object>> getAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        Map<String, Object> page = productService.getProductsPage(cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+    
+    @GetMapping(value = "/stream", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        ObjectWriter writer = objectMapper.writerFor(Product.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        
+        // Products are written as they come off the Mongo cursor, one JSON document per line
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter sequenceWriter = writer.writeValues(outputStream)) {
+                productService.forEachProduct(product -> {
+                    try {
+                        sequenceWriter.write(product);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().body(body);
     }
     
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam(required = false) String q) {
-        List<Product> products = productService.searchProducts(q);
+    public ResponseEntity<List<ProductSummary>> searchProducts(@RequestParam(required = false) String q) {
+        List<ProductSummary> products = productService.searchProducts(q);
         return ResponseEntity.ok(products);
     }
 }
@@ -0,0 +1,58 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.service.ReactiveOrderService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Same routes and responses as OrderController; the request thread is released while MongoDB answers
+@RestController
+@RequestMapping("/api/orders")
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveOrderController {
+    
+    private final ReactiveOrderService reactiveOrderService;
+    
+    @PostMapping
+    public Mono<ResponseEntity<Map<String, Object>>> createOrder(@Valid @RequestBody CreateOrderRequest request) {
+        return reactiveOrderService.createOrder(request)
+                .map(orderDetails -> ResponseEntity.status(HttpStatus.CREATED).body(orderDetails));
+    }
+    
+    @GetMapping("/{orderId}")
+    public Mono<ResponseEntity<Map<String, Object>>> getOrder(@PathVariable String orderId) {
+        return reactiveOrderService.getOrderWithPayment(orderId).map(ResponseEntity::ok);
+    }
+    
+    @GetMapping("/user/{userId}")
+    public Mono<ResponseEntity<Map<String, Object>>> getOrderHistory(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "full") String view) {
+        return reactiveOrderService.getOrderHistory(userId, cursor, limit, "summary".equalsIgnoreCase(view))
+                .map(ResponseEntity::ok);
+    }
+    
+    @PostMapping("/{orderId}/cancel")
+    public Mono<ResponseEntity<Map<String, Object>>> cancelOrder(@PathVariable String orderId) {
+        return reactiveOrderService.cancelOrder(orderId).map(order -> {
+            Map<String, Object> response = new HashMap<>();
+            response.put("id", order.getId());
+            response.put("userId", order.getUserId());
+            response.put("totalAmount", order.getTotalAmount());
+            response.put("status", order.getStatus().toString());
+            response.put("message", "Order cancelled successfully");
+            return ResponseEntity.ok(response);
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.dto.PaymentRequest;
+import com.example.ecommerce.service.ReactivePaymentService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/payments")
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactivePaymentController {
+    
+    private final ReactivePaymentService reactivePaymentService;
+    
+    @PostMapping("/create")
+    public Mono<ResponseEntity<Map<String, Object>>> createPayment(@Valid @RequestBody PaymentRequest request) {
+        return reactivePaymentService.createPayment(request)
+                .map(payment -> ResponseEntity.status(HttpStatus.CREATED).body(payment));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartItemWithProduct {
+    
+    private String id;
+    
+    private String productId;
+    
+    private Integer quantity;
+    
+    private Product product; // null when the product no longer exists
+}
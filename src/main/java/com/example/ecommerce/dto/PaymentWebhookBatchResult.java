@@ -0,0 +1,10 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+// Outcome of applying a batch of mock webhook events: applied, skipped as already applied, and rejected per event
+public record PaymentWebhookBatchResult(int processed, int duplicates, List<EventError> errors) {
+    
+    public record EventError(String orderId, String paymentId, String message) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.ecommerce.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+// One row of POST /api/products/bulk: a ProductRequest plus the ID it is upserted under
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class ProductImportRow extends ProductRequest {
+    
+    @NotBlank(message = "Product id is required")
+    private String id;
+}
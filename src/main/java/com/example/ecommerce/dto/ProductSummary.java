@@ -0,0 +1,25 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Product metadata without stock; safe to cache because stock is always read from the database
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSummary {
+    
+    private String id;
+    
+    private String name;
+    
+    private String description;
+    
+    private Double price;
+    
+    public static ProductSummary of(Product product) {
+        return new ProductSummary(product.getId(), product.getName(), product.getDescription(), product.getPrice());
+    }
+}
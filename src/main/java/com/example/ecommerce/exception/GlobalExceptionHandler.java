@@ -1,5 +1,7 @@
 package com.example.ecommerce.exception;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -20,6 +22,23 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
     
+    // Razorpay circuit open or too many calls already waiting on it
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<Map<String, String>> handleProviderUnavailable(RuntimeException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Payment provider is temporarily unavailable, please retry shortly");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+    
+    // Retrying the same request can succeed: 409 when concurrent updates kept winning, 503 when the commit
+    // outcome could not be confirmed
+    @ExceptionHandler(TransactionRetryException.class)
+    public ResponseEntity<Map<String, String>> handleTransactionRetry(TransactionRetryException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(e.isCommitUnknown() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.CONFLICT).body(error);
+    }
+    
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationExceptions(
             MethodArgumentNotValidException e) {
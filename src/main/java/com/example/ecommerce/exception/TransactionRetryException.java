@@ -0,0 +1,18 @@
+package com.example.ecommerce.exception;
+
+// A transaction kept aborting on transient errors (e.g. write conflicts with concurrent checkouts of the same
+// product) until the retries ran out, or its commit outcome could not be confirmed. Either way nothing is
+// known to be wrong with the request itself, so the client may retry it.
+public class TransactionRetryException extends RuntimeException {
+    
+    private final boolean commitUnknown;
+    
+    public TransactionRetryException(String message, Throwable cause, boolean commitUnknown) {
+        super(message, cause);
+        this.commitUnknown = commitUnknown;
+    }
+    
+    public boolean isCommitUnknown() {
+        return commitUnknown;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.ecommerce.exception;
+
+import java.util.Set;
+
+// A concurrent delivery recorded the same webhook first. Inside a transaction the duplicate key error
+// has already aborted the transaction, so the event cannot simply be skipped there.
+public class WebhookAlreadyProcessedException extends RuntimeException {
+    
+    private final Set<String> keys;
+    
+    public WebhookAlreadyProcessedException(Set<String> keys) {
+        super("Webhook already processed: " + keys);
+        this.keys = keys;
+    }
+    
+    public Set<String> getKeys() {
+        return keys;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ecommerce.job;
+
+import com.example.ecommerce.repository.InventoryShardRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.service.InventoryShardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Keeps Product.stock of sharded products close to the sum of their shards, and tells this node
+// about products sharded elsewhere. One aggregation and one bulk write per run.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InventoryShardAggregator {
+    
+    private final InventoryShardRepository inventoryShardRepository;
+    private final ProductRepository productRepository;
+    private final InventoryShardService inventoryShardService;
+    
+    @Scheduled(fixedDelayString = "${inventory.shards.aggregate-interval-ms:1000}")
+    public void aggregate() {
+        try {
+            Map<String, Integer> stockByProductId = inventoryShardRepository.sumStockByProduct();
+            if (stockByProductId.isEmpty()) {
+                return;
+            }
+            productRepository.updateShardedStock(stockByProductId);
+            inventoryShardService.discover(productRepository.findAllById(stockByProductId.keySet()));
+        } catch (RuntimeException e) {
+            log.warn("Inventory shard aggregation failed; retrying on the next run", e);
+        }
+    }
+}
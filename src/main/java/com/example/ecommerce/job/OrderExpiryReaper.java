@@ -0,0 +1,85 @@
+package com.example.ecommerce.job;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.service.OrderExpiryService;
+import com.example.ecommerce.service.SchedulerLeaseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+// Expires stale payments and unpaid orders so their stock goes back. Every node schedules the run, but
+// only the holder of the order-expiry lease does the work, renewing the lease before each batch.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "orders.expiry.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderExpiryReaper {
+    
+    private static final String LEASE = "order-expiry";
+    
+    private final OrderExpiryService orderExpiryService;
+    private final SchedulerLeaseService schedulerLeaseService;
+    
+    @Value("${orders.expiry.payment-timeout:30m}")
+    private Duration paymentTimeout;
+    
+    @Value("${orders.expiry.order-timeout:30m}")
+    private Duration orderTimeout;
+    
+    @Value("${orders.expiry.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${orders.expiry.lease-ttl:2m}")
+    private Duration leaseTtl;
+    
+    @Scheduled(fixedDelayString = "${orders.expiry.interval-ms:60000}")
+    public void reap() {
+        if (!schedulerLeaseService.tryAcquire(LEASE, leaseTtl)) {
+            return;
+        }
+        try {
+            int expiredPayments = expireStalePayments();
+            int scannedOrders = cancelUnpaidOrders();
+            if (expiredPayments > 0 || scannedOrders > 0) {
+                log.info("Order expiry: {} stale payments failed, {} unpaid orders checked", expiredPayments, scannedOrders);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Order expiry failed; retrying on the next run", e);
+        } finally {
+            schedulerLeaseService.release(LEASE);
+        }
+    }
+    
+    private int expireStalePayments() {
+        Instant cutoff = Instant.now().minus(paymentTimeout);
+        int total = 0;
+        int expired;
+        do {
+            expired = orderExpiryService.expireStalePayments(cutoff, batchSize);
+            total += expired;
+        } while (expired == batchSize && schedulerLeaseService.tryAcquire(LEASE, leaseTtl));
+        return total;
+    }
+    
+    private int cancelUnpaidOrders() {
+        Instant cutoff = Instant.now().minus(orderTimeout);
+        Instant after = Instant.EPOCH;
+        int total = 0;
+        List<Order> scanned;
+        do {
+            scanned = orderExpiryService.cancelUnpaidOrders(after, cutoff, batchSize);
+            total += scanned.size();
+            if (!scanned.isEmpty()) {
+                after = scanned.get(scanned.size() - 1).getCreatedAt();
+            }
+        } while (scanned.size() == batchSize && schedulerLeaseService.tryAcquire(LEASE, leaseTtl));
+        return total;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ecommerce.job;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.repository.OrderItemRepository;
+import com.example.ecommerce.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Copies legacy order_items rows into the embedded Order.items array, one batch of orders at a time
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderItemsBackfillJob {
+    
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final TaskExecutor taskExecutor;
+    
+    @Value("${orders.backfill.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${orders.backfill.batch-size:500}")
+    private int batchSize;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            taskExecutor.execute(this::run);
+        }
+    }
+    
+    public void run() {
+        String lastOrderId = "";
+        long embedded = 0;
+        try {
+            while (true) {
+                List<Order> orders = orderRepository.findByItemsIsNullAndIdGreaterThan(
+                        lastOrderId, PageRequest.of(0, batchSize, Sort.by("id")));
+                if (orders.isEmpty()) {
+                    break;
+                }
+                
+                // Orders without any order_items rows get an empty array so they are not revisited
+                Map<String, List<OrderItem>> itemsByOrderId = new HashMap<>();
+                orders.forEach(order -> itemsByOrderId.put(order.getId(), new ArrayList<>()));
+                orderItemRepository.findByOrderIdIn(itemsByOrderId.keySet())
+                        .forEach(item -> itemsByOrderId.get(item.getOrderId()).add(item));
+                
+                embedded += orderRepository.embedItems(itemsByOrderId);
+                lastOrderId = orders.get(orders.size() - 1).getId();
+            }
+            if (embedded > 0) {
+                log.info("Embedded line items into {} orders", embedded);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Order items backfill stopped after {} orders; it resumes on next start", embedded, e);
+        }
+    }
+}
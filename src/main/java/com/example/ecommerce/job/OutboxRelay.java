@@ -0,0 +1,181 @@
+package com.example.ecommerce.job;
+
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.outbox.OutboxSink;
+import com.example.ecommerce.repository.OutboxEventRepository;
+import com.example.ecommerce.service.SchedulerLeaseService;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+// Hands committed outbox events to the configured sinks in batches, in _id order. The publishedAt
+// marks are the checkpoint, so a restart carries on with whatever is unpublished. In change-stream
+// mode every insert into outbox_events wakes the relay, and the scheduled poll only runs while the
+// stream is down. Every node runs the relay, but only the holder of the outbox-relay lease publishes,
+// renewing the lease before each batch; the other nodes keep polling so they can take over once it expires.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+    
+    private static final long RETRY_DELAY_MILLIS = 5000;
+    private static final String LEASE = "outbox-relay";
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLeaseService schedulerLeaseService;
+    private final List<OutboxSink> sinks;
+    private final int batchSize;
+    private final boolean changeStream;
+    private final Duration leaseTtl;
+    
+    private volatile boolean running;
+    private volatile boolean streaming;
+    private volatile boolean leaseHeld;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       MongoTemplate mongoTemplate,
+                       SchedulerLeaseService schedulerLeaseService,
+                       List<OutboxSink> availableSinks,
+                       @Value("${outbox.relay.sinks:events}") Set<String> sinkNames,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.mode:polling}") String mode,
+                       @Value("${outbox.relay.lease-ttl:30s}") Duration leaseTtl) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.schedulerLeaseService = schedulerLeaseService;
+        this.sinks = availableSinks.stream().filter(sink -> sinkNames.contains(sink.name())).toList();
+        if (sinks.size() != sinkNames.size()) {
+            throw new IllegalStateException("Unknown outbox sink in " + sinkNames + "; available: "
+                    + availableSinks.stream().map(OutboxSink::name).toList());
+        }
+        this.batchSize = batchSize;
+        this.changeStream = "change-stream".equalsIgnoreCase(mode);
+        this.leaseTtl = leaseTtl;
+    }
+    
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval-ms:500}")
+    public void poll() {
+        // A node that is not publishing keeps polling for the lease, since its stream only wakes it on inserts
+        if (streaming && leaseHeld) {
+            return;
+        }
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            log.warn("Outbox relay failed; unpublished events are retried on the next round", e);
+        }
+    }
+    
+    // Publishes until no unpublished events are left; events of a batch that fails are offered again.
+    // Publishes nothing while another node holds the lease.
+    public synchronized int relay() {
+        int published = 0;
+        while (true) {
+            leaseHeld = schedulerLeaseService.tryAcquire(LEASE, leaseTtl);
+            if (!leaseHeld) {
+                return published;
+            }
+            List<OutboxEvent> batch = outboxEventRepository.findByPublishedAtIsNullOrderByIdAsc(
+                    PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return published;
+            }
+            for (OutboxSink sink : sinks) {
+                sink.publish(batch);
+            }
+            outboxEventRepository.markPublished(batch.stream().map(OutboxEvent::getId).toList(), Instant.now());
+            published += batch.size();
+            if (batch.size() < batchSize) {
+                return published;
+            }
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!changeStream) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::watch, "outbox-relay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void watch() {
+        while (running) {
+            try {
+                cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(OutboxEvent.class))
+                        .watch(List.of(Aggregates.match(Filters.eq("operationType", "insert"))))
+                        .cursor();
+                // Events committed before the stream opened are picked up here
+                relay();
+                streaming = true;
+                while (running) {
+                    cursor.next();
+                    // One relay round covers every insert already received
+                    while (cursor.available() > 0) {
+                        cursor.next();
+                    }
+                    relay();
+                }
+            } catch (RuntimeException e) {
+                streaming = false;
+                closeCursor();
+                if (!running) {
+                    return;
+                }
+                log.warn("Outbox change stream failed; retrying in {} ms", RETRY_DELAY_MILLIS, e);
+                sleep();
+            }
+        }
+    }
+    
+    private void sleep() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeCursor();
+        if (leaseHeld) {
+            schedulerLeaseService.release(LEASE);
+        }
+    }
+    
+    private void closeCursor() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (RuntimeException e) {
+                // Already broken
+            }
+        }
+    }
+}
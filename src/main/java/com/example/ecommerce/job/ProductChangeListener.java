@@ -0,0 +1,128 @@
+package com.example.ecommerce.job;
+
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.service.ProductCache;
+import com.example.ecommerce.service.ProductSearchIndex;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+
+// Keeps ProductCache and ProductSearchIndex consistent across nodes by watching the products collection
+// (needs a replica set). Writes that only touch stock are ignored, since neither of them holds stock.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "product.cache.invalidation", havingValue = "change-stream")
+public class ProductChangeListener {
+    
+    private static final long RETRY_DELAY_MILLIS = 5000;
+    
+    private final MongoTemplate mongoTemplate;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+    
+    private volatile boolean running;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "product-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void run() {
+        boolean resync = false;
+        while (running) {
+            try {
+                cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class))
+                        .watch(List.of(Aggregates.match(Filters.in("operationType", "insert", "update", "replace", "delete"))))
+                        .fullDocument(FullDocument.UPDATE_LOOKUP)
+                        .cursor();
+                // Changes may have been missed while disconnected; the index is read again once the new
+                // stream is open, so nothing written in between is lost
+                if (resync) {
+                    productSearchIndex.rebuild();
+                    resync = false;
+                }
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.next();
+                    if (isStockOnly(change)) {
+                        continue;
+                    }
+                    String productId = change.getDocumentKey().get("_id").asString().getValue();
+                    productCache.invalidate(productId);
+                    Document document = change.getFullDocument();
+                    if (document == null) {
+                        productSearchIndex.remove(productId); // Deleted, possibly before the lookup
+                    } else {
+                        productSearchIndex.index(mongoTemplate.getConverter().read(Product.class, document));
+                    }
+                }
+            } catch (RuntimeException e) {
+                closeCursor();
+                if (!running) {
+                    return;
+                }
+                // Start over from an empty cache, and rebuild the search index on reconnect
+                log.warn("Product change stream failed; retrying in {} ms", RETRY_DELAY_MILLIS, e);
+                productCache.clear();
+                resync = true;
+                sleep();
+            }
+        }
+    }
+    
+    private static boolean isStockOnly(ChangeStreamDocument<Document> change) {
+        if (change.getOperationType() != OperationType.UPDATE || change.getUpdateDescription() == null) {
+            return false;
+        }
+        BsonDocument updatedFields = change.getUpdateDescription().getUpdatedFields();
+        List<String> removedFields = change.getUpdateDescription().getRemovedFields();
+        return (removedFields == null || removedFields.isEmpty())
+                && updatedFields != null
+                && updatedFields.keySet().stream().allMatch(field -> field.equals("stock"));
+    }
+    
+    private void sleep() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeCursor();
+    }
+    
+    private void closeCursor() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (RuntimeException e) {
+                // Already broken
+            }
+        }
+    }
+}
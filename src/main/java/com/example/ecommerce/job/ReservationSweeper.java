@@ -0,0 +1,40 @@
+package com.example.ecommerce.job;
+
+import com.example.ecommerce.service.InventoryReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Returns stock held by carts that were not checked out before their hold expired
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReservationSweeper {
+    
+    private final InventoryReservationService inventoryReservationService;
+    
+    @Value("${inventory.reservations.sweep-batch-size:500}")
+    private int batchSize;
+    
+    @Scheduled(fixedDelayString = "${inventory.reservations.sweep-interval-ms:30000}")
+    public void sweep() {
+        if (!inventoryReservationService.isEnabled()) {
+            return;
+        }
+        try {
+            int swept = 0;
+            int batch;
+            do {
+                batch = inventoryReservationService.expireDue(batchSize);
+                swept += batch;
+            } while (batch == batchSize);
+            if (swept > 0) {
+                log.info("Returned {} expired stock holds to stock", swept);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Stock hold sweep failed; retrying on the next run", e);
+        }
+    }
+}
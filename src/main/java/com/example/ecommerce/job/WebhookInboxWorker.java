@@ -0,0 +1,252 @@
+package com.example.ecommerce.job;
+
+import com.example.ecommerce.dto.PaymentWebhookBatchResult;
+import com.example.ecommerce.dto.PaymentWebhookRequest;
+import com.example.ecommerce.exception.WebhookAlreadyProcessedException;
+import com.example.ecommerce.model.PaymentStatus;
+import com.example.ecommerce.model.WebhookInboxEvent;
+import com.example.ecommerce.repository.WebhookInboxRepository;
+import com.example.ecommerce.service.PaymentService;
+import com.example.ecommerce.service.WebhookInboxService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Drains webhook_inbox: claims due events, applies them on a bounded pool with every event of an
+// order in the same lane (so they are applied in arrival order), and retries failures with backoff.
+// An order is leased to one node while its events are applied, so several nodes can run the worker.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookInboxWorker {
+    
+    private final WebhookInboxRepository webhookInboxRepository;
+    private final PaymentService paymentService;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    
+    @Value("${webhooks.inbox.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${webhooks.inbox.workers:4}")
+    private int workers;
+    
+    @Value("${webhooks.inbox.max-attempts:8}")
+    private int maxAttempts;
+    
+    @Value("${webhooks.inbox.retry-backoff:1s}")
+    private Duration retryBackoff;
+    
+    @Value("${webhooks.inbox.max-retry-backoff:5m}")
+    private Duration maxRetryBackoff;
+    
+    @Value("${webhooks.inbox.claim-timeout:2m}")
+    private Duration claimTimeout;
+    
+    @Value("${webhooks.inbox.max-drain-time:2s}")
+    private Duration maxDrainTime;
+    
+    private volatile ExecutorService lanes;
+    
+    @Scheduled(fixedDelayString = "${webhooks.inbox.poll-interval-ms:200}")
+    public void poll() {
+        try {
+            long released = webhookInboxRepository.releaseStaleClaims(Instant.now().minus(claimTimeout));
+            if (released > 0) {
+                log.warn("Re-queued {} webhook events whose claim timed out", released);
+            }
+            
+            // Keep draining while there is a backlog, but give the scheduler thread back after max-drain-time;
+            // the next poll carries on
+            Instant deadline = Instant.now().plus(maxDrainTime);
+            List<WebhookInboxEvent> claimed;
+            do {
+                // The claimed orders stay leased to this node until their events are applied, at most claim-timeout
+                Instant now = Instant.now();
+                claimed = webhookInboxRepository.claimDue(nodeId, batchSize, now, now.plus(claimTimeout));
+                if (!claimed.isEmpty()) {
+                    try {
+                        process(claimed);
+                    } finally {
+                        webhookInboxRepository.releaseOrderKeys(
+                                claimed.stream().map(WebhookInboxEvent::getOrderKey).collect(Collectors.toSet()), nodeId);
+                    }
+                }
+            } while (claimed.size() == batchSize && Instant.now().isBefore(deadline));
+        } catch (RuntimeException e) {
+            log.warn("Webhook inbox poll failed", e);
+        }
+    }
+    
+    private void process(List<WebhookInboxEvent> claimed) {
+        // Claimed events are in arrival order, and each order always lands in the same lane
+        Map<Integer, List<WebhookInboxEvent>> eventsByLane = new LinkedHashMap<>();
+        for (WebhookInboxEvent event : claimed) {
+            int lane = Math.floorMod(event.getOrderKey().hashCode(), workers);
+            eventsByLane.computeIfAbsent(lane, key -> new ArrayList<>()).add(event);
+        }
+        
+        ExecutorService executor = lanes();
+        CompletableFuture.allOf(eventsByLane.values().stream()
+                        .map(events -> CompletableFuture.runAsync(() -> processLane(events), executor))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+    }
+    
+    private void processLane(List<WebhookInboxEvent> events) {
+        List<WebhookInboxEvent> mockEvents = new ArrayList<>();
+        Set<String> failedOrderKeys = new HashSet<>();
+        List<String> deferred = new ArrayList<>();
+        for (WebhookInboxEvent event : events) {
+            // An unknown status never applies, however often it is retried
+            if (!isKnownStatus(event.getPaymentStatus())) {
+                webhookInboxRepository.markFailed(List.of(event.getId()), "Invalid payment status: " + event.getPaymentStatus());
+                continue;
+            }
+            if (WebhookInboxService.PROVIDER_RAZORPAY.equals(event.getProvider())) {
+                // Later events of an order wait until the failed earlier one has gone through
+                if (failedOrderKeys.contains(event.getOrderKey())) {
+                    deferred.add(event.getId());
+                    continue;
+                }
+                try {
+                    paymentService.handleRazorpayWebhook(event.getOrderKey(), event.getPaymentId(), event.getPaymentStatus());
+                    webhookInboxRepository.markDone(List.of(event.getId()), Instant.now());
+                } catch (WebhookAlreadyProcessedException e) {
+                    // A concurrent delivery of the same webhook applied it
+                    webhookInboxRepository.markDone(List.of(event.getId()), Instant.now());
+                } catch (RuntimeException e) {
+                    failedOrderKeys.add(event.getOrderKey());
+                    retryOrFail(List.of(event), e.getMessage());
+                }
+            } else {
+                mockEvents.add(event);
+            }
+        }
+        webhookInboxRepository.releaseClaims(deferred);
+        if (!mockEvents.isEmpty()) {
+            processMockEvents(mockEvents);
+        }
+    }
+    
+    // Mock events go through the batch path: one lookup and one bulk write for the whole lane
+    private void processMockEvents(List<WebhookInboxEvent> events) {
+        List<PaymentWebhookRequest> requests = events.stream()
+                .map(event -> new PaymentWebhookRequest(
+                        event.getOrderKey(), event.getPaymentId(), event.getPaymentStatus(), null))
+                .toList();
+        PaymentWebhookBatchResult result;
+        try {
+            result = paymentService.handlePaymentWebhookBatch(requests);
+        } catch (RuntimeException e) {
+            Map<String, List<WebhookInboxEvent>> eventsByOrder = new LinkedHashMap<>();
+            for (WebhookInboxEvent event : events) {
+                eventsByOrder.computeIfAbsent(event.getOrderKey(), key -> new ArrayList<>()).add(event);
+            }
+            if (eventsByOrder.size() == 1) {
+                retryOrFail(events, e.getMessage());
+                return;
+            }
+            // One order rolled back the whole batch; apply each order on its own so only that one is retried.
+            // Events a concurrent delivery got to first (WebhookAlreadyProcessedException) are skipped on that pass.
+            eventsByOrder.values().forEach(this::processMockEvents);
+            return;
+        }
+        
+        Map<String, String> errorsByOrderId = new LinkedHashMap<>();
+        for (PaymentWebhookBatchResult.EventError error : result.errors()) {
+            errorsByOrderId.putIfAbsent(error.orderId(), error.message());
+        }
+        List<String> done = new ArrayList<>();
+        Map<String, List<WebhookInboxEvent>> failedByMessage = new LinkedHashMap<>();
+        for (WebhookInboxEvent event : events) {
+            String error = errorsByOrderId.get(event.getOrderKey());
+            if (error == null) {
+                done.add(event.getId());
+            } else {
+                failedByMessage.computeIfAbsent(error, key -> new ArrayList<>()).add(event);
+            }
+        }
+        webhookInboxRepository.markDone(done, Instant.now());
+        failedByMessage.forEach((error, failed) -> retryOrFail(failed, error));
+    }
+    
+    private static boolean isKnownStatus(String status) {
+        if (status == null) {
+            return false;
+        }
+        try {
+            PaymentStatus.valueOf(status.toUpperCase());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    // The payment may not be visible yet when the webhook races its creation, so most failures are retried
+    private void retryOrFail(List<WebhookInboxEvent> events, String error) {
+        Set<String> exhausted = new HashSet<>();
+        Map<Integer, List<String>> retryByAttempt = new LinkedHashMap<>();
+        for (WebhookInboxEvent event : events) {
+            int attempt = event.getAttempts() + 1;
+            if (attempt >= maxAttempts) {
+                exhausted.add(event.getId());
+            } else {
+                retryByAttempt.computeIfAbsent(attempt, key -> new ArrayList<>()).add(event.getId());
+            }
+        }
+        
+        if (!exhausted.isEmpty()) {
+            log.error("Giving up on {} webhook events after {} attempts: {}", exhausted.size(), maxAttempts, error);
+            webhookInboxRepository.markFailed(exhausted, error);
+        }
+        retryByAttempt.forEach((attempt, ids) ->
+                webhookInboxRepository.markRetry(ids, error, Instant.now().plus(backoff(attempt))));
+    }
+    
+    private Duration backoff(int attempt) {
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(attempt - 1, 20));
+        return delay.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : delay;
+    }
+    
+    private ExecutorService lanes() {
+        if (lanes == null) {
+            synchronized (this) {
+                if (lanes == null) {
+                    lanes = Executors.newFixedThreadPool(workers, runnable -> {
+                        Thread thread = new Thread(runnable, "webhook-inbox-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return lanes;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+    }
+}
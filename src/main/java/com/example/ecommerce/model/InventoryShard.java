@@ -0,0 +1,31 @@
+package com.example.ecommerce.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One slice of a sharded product's stock; decrements are spread over the slices so that
+// concurrent checkouts of the same product do not all write the same document
+@Document(collection = "inventory_shards")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryShard {
+    
+    @Id
+    private String id; // productId#shard
+    
+    @Indexed
+    private String productId;
+    
+    private Integer shard; // 0 .. Product.inventoryShards - 1
+    
+    private Integer stock;
+    
+    public static String shardId(String productId, int shard) {
+        return productId + "#" + shard;
+    }
+}
@@ -1,14 +1,22 @@
 package com.example.ecommerce.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.Instant;
+import java.util.List;
 
 @Document(collection = "orders")
+@CompoundIndexes({
+        // _id is part of the history cursor, so ties on createdAt are resolved in the index too
+        @CompoundIndex(name = "user_created_id_idx", def = "{'userId': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'createdAt': 1}") // Unpaid orders, oldest first
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,4 +32,8 @@ public class Order {
     private OrderStatus status; // CREATED, PAID, FAILED, CANCELLED
     
     private Instant createdAt;
+    
+    private List<OrderItem> items; // Embedded line items; null for orders not yet backfilled from order_items
+    
+    private Boolean stockReleased; // True once the items went back to stock (payment failed, order cancelled or expired)
 }
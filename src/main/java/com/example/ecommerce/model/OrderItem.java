@@ -1,6 +1,7 @@
 package com.example.ecommerce.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -15,6 +16,7 @@ public class OrderItem {
     @Id
     private String id;
     
+    @Indexed
     private String orderId;
     
     private String productId;
@@ -4,5 +4,6 @@ public enum OrderStatus {
     CREATED,
     PAID,
     FAILED,
-    CANCELLED
+    CANCELLED,
+    REFUND_REQUIRED // Paid after expiry, but the stock had been sold in the meantime
 }
@@ -0,0 +1,46 @@
+package com.example.ecommerce.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// A state change written in the same transaction as the change itself, then handed to the outbox sinks by OutboxRelay
+@Document(collection = "outbox_events")
+@CompoundIndex(name = "published_at_id_idx", def = "{'publishedAt': 1, '_id': 1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    
+    @Id
+    private String id; // Generated ObjectId, so _id order is write order
+    
+    private OutboxEventType type;
+    
+    private String orderId; // Partition key: the events of one order are published in order
+    
+    private String paymentId; // Our payment ID, for payment events
+    
+    private String status; // The new OrderStatus or PaymentStatus
+    
+    private Instant occurredAt;
+    
+    @Indexed(expireAfter = "7d")
+    private Instant publishedAt; // Null until relayed; published events are removed a week later
+    
+    public static OutboxEvent orderStatusChanged(String orderId, OrderStatus status) {
+        return new OutboxEvent(null, OutboxEventType.ORDER_STATUS_CHANGED, orderId, null, status.toString(),
+                Instant.now(), null);
+    }
+    
+    public static OutboxEvent paymentStatusChanged(Payment payment) {
+        return new OutboxEvent(null, OutboxEventType.PAYMENT_STATUS_CHANGED, payment.getOrderId(), payment.getId(),
+                payment.getStatus().toString(), Instant.now(), null);
+    }
+}
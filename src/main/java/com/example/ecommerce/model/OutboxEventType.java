@@ -0,0 +1,6 @@
+package com.example.ecommerce.model;
+
+public enum OutboxEventType {
+    ORDER_STATUS_CHANGED,
+    PAYMENT_STATUS_CHANGED
+}
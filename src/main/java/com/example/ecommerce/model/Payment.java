@@ -1,6 +1,8 @@
 package com.example.ecommerce.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,6 +11,7 @@ import lombok.NoArgsConstructor;
 import java.time.Instant;
 
 @Document(collection = "payments")
+@CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'createdAt': 1}") // Stale PENDING payments, oldest first
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -17,13 +20,17 @@ public class Payment {
     @Id
     private String id;
     
+    @Indexed(unique = true)
     private String orderId;
     
     private Double amount;
     
     private PaymentStatus status; // PENDING, SUCCESS, FAILED
     
+    @Indexed
     private String paymentId; // External payment ID
     
     private Instant createdAt;
+    
+    private Instant expiredAt; // Set when the expiry sweep failed the payment
 }
@@ -0,0 +1,24 @@
+package com.example.ecommerce.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Marker for a webhook that has been applied; the idempotency key is the _id, so it is unique
+@Document(collection = "processed_webhooks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessedWebhook {
+    
+    @Id
+    private String id; // e.g. mock:pay_123:SUCCESS, razorpay:pay_abc:SUCCESS
+    
+    @Indexed(expireAfter = "7d")
+    private Instant processedAt; // Providers stop retrying long before the marker expires
+}
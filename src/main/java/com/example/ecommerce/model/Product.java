@@ -21,5 +21,7 @@ public class Product {
     
     private Double price;
     
-    private Integer stock;
+    private Integer stock; // For sharded products, the total of inventory_shards as of the last aggregation
+    
+    private Integer inventoryShards; // Number of inventory_shards slices; null when stock lives on this document
 }
@@ -0,0 +1,8 @@
+package com.example.ecommerce.model;
+
+public enum ReservationStatus {
+    HELD,
+    CONSUMED, // Turned into an order
+    RELEASED, // Given back, e.g. when the cart was cleared
+    EXPIRED // Not checked out in time; swept back into stock
+}
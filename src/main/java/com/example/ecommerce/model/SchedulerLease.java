@@ -0,0 +1,24 @@
+package com.example.ecommerce.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Lets one node at a time run a scheduled job; a lease that is not renewed can be taken over once it expires
+@Document(collection = "scheduler_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerLease {
+    
+    @Id
+    private String id; // Job name, e.g. order-expiry
+    
+    private String owner; // Node ID of the holder
+    
+    private Instant expiresAt;
+}
@@ -0,0 +1,44 @@
+package com.example.ecommerce.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// A quantity of a product taken out of stock for a user's cart until expiresAt
+@Document(collection = "stock_reservations")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_status_idx", def = "{'userId': 1, 'status': 1}"),
+        @CompoundIndex(name = "status_expires_idx", def = "{'status': 1, 'expiresAt': 1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+    
+    @Id
+    private String id;
+    
+    private String userId;
+    
+    private String productId;
+    
+    private Integer quantity;
+    
+    private ReservationStatus status;
+    
+    private Instant createdAt;
+    
+    private Instant expiresAt;
+    
+    private String orderId; // Set when the hold is consumed by an order
+    
+    @Indexed(expireAfter = "1d")
+    private Instant closedAt; // Set when the hold leaves HELD; closed reservations are removed a day later
+}
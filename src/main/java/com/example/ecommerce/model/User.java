@@ -1,6 +1,7 @@
 package com.example.ecommerce.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -17,6 +18,7 @@ public class User {
     
     private String username;
     
+    @Indexed(unique = true)
     private String email;
     
     private String role;
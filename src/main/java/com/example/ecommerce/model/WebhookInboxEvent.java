@@ -0,0 +1,51 @@
+package com.example.ecommerce.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Document(collection = "webhook_inbox")
+@CompoundIndexes({
+        @CompoundIndex(name = "status_next_attempt_idx", def = "{'status': 1, 'nextAttemptAt': 1}"),
+        @CompoundIndex(name = "order_key_status_idx", def = "{'orderKey': 1, 'status': 1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookInboxEvent {
+    
+    @Id
+    private String id;
+    
+    private String provider; // mock, razorpay
+    
+    private String orderKey; // Our order ID (mock) or the Razorpay order ID; events are applied in order per key
+    
+    private String paymentId; // External payment ID
+    
+    private String paymentStatus; // SUCCESS, FAILED
+    
+    private WebhookInboxStatus status;
+    
+    private int attempts;
+    
+    private String lastError;
+    
+    private String claimedBy;
+    
+    private Instant claimedAt;
+    
+    private Instant receivedAt;
+    
+    private Instant nextAttemptAt;
+    
+    @Indexed(expireAfter = "7d")
+    private Instant processedAt; // Processed events are removed a week later
+}
@@ -0,0 +1,26 @@
+package com.example.ecommerce.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Lets one node at a time apply the inbox events of an order, so they are applied in arrival order across nodes
+@Document(collection = "webhook_inbox_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookInboxLease {
+    
+    @Id
+    private String id; // Order key of the events
+    
+    private String owner; // Node ID of the holder
+    
+    @Indexed(expireAfter = "1h")
+    private Instant expiresAt; // Taken over once past; the TTL index only cleans up leases left by stopped nodes
+}
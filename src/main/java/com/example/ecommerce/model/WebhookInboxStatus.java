@@ -0,0 +1,8 @@
+package com.example.ecommerce.model;
+
+public enum WebhookInboxStatus {
+    PENDING,
+    PROCESSING,
+    DONE,
+    FAILED // Gave up after the maximum number of attempts
+}
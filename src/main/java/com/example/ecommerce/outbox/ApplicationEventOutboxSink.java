@@ -0,0 +1,27 @@
+package com.example.ecommerce.outbox;
+
+import com.example.ecommerce.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// In-process delivery: every event is published as a Spring application event, so any bean can
+// subscribe with @EventListener(OutboxEvent.class). Listeners run on the relay thread.
+@Component
+@RequiredArgsConstructor
+public class ApplicationEventOutboxSink implements OutboxSink {
+    
+    private final ApplicationEventPublisher applicationEventPublisher;
+    
+    @Override
+    public String name() {
+        return "events";
+    }
+    
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        events.forEach(applicationEventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.ecommerce.outbox;
+
+import com.example.ecommerce.model.OutboxEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Appends events to a local NDJSON file, one JSON object per line, for tools that tail files
+@Component
+public class FileOutboxSink implements OutboxSink {
+    
+    private final ObjectWriter writer;
+    private final Path path;
+    
+    private BufferedWriter out;
+    
+    public FileOutboxSink(ObjectMapper objectMapper,
+                          @Value("${outbox.sinks.file.path:outbox-events.ndjson}") String path) {
+        this.writer = objectMapper.writerFor(OutboxEvent.class);
+        this.path = Path.of(path);
+    }
+    
+    @Override
+    public String name() {
+        return "file";
+    }
+    
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) {
+        try {
+            if (out == null) {
+                out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (OutboxEvent event : events) {
+                out.write(writer.writeValueAsString(event));
+                out.newLine();
+            }
+            out.flush();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Failed to append outbox events to " + path, e);
+        }
+    }
+    
+    @PreDestroy
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // Nothing left to flush to
+        }
+        out = null;
+    }
+}
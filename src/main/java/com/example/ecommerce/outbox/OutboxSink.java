@@ -0,0 +1,14 @@
+package com.example.ecommerce.outbox;
+
+import com.example.ecommerce.model.OutboxEvent;
+
+import java.util.List;
+
+// Destination for relayed outbox events, selected by name in outbox.relay.sinks. Delivery is at least once:
+// a batch is offered again if any sink throws, so consumers should ignore event IDs they have already seen.
+public interface OutboxSink {
+    
+    String name();
+    
+    void publish(List<OutboxEvent> events);
+}
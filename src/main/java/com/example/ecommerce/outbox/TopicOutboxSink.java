@@ -0,0 +1,87 @@
+package com.example.ecommerce.outbox;
+
+import com.example.ecommerce.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Local stand-in for a Kafka topic: a fixed number of partitions keyed by order ID, each an
+// append-only log that consumers read from an offset they track themselves. Only the most recent
+// events of each partition are retained, and nothing survives a restart.
+@Component
+public class TopicOutboxSink implements OutboxSink {
+    
+    private final Partition[] partitions;
+    private final int retention;
+    
+    public TopicOutboxSink(@Value("${outbox.sinks.topic.partitions:8}") int partitionCount,
+                           @Value("${outbox.sinks.topic.retention:10000}") int retention) {
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition();
+        }
+        this.retention = retention;
+    }
+    
+    @Override
+    public String name() {
+        return "topic";
+    }
+    
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            Partition partition = partitions[partitionFor(event.getOrderId())];
+            synchronized (partition) {
+                partition.log.addLast(event);
+                if (partition.log.size() > retention) {
+                    partition.log.removeFirst();
+                    partition.startOffset++;
+                }
+            }
+        }
+    }
+    
+    public int partitionCount() {
+        return partitions.length;
+    }
+    
+    public int partitionFor(String orderId) {
+        return Math.floorMod(orderId.hashCode(), partitions.length);
+    }
+    
+    // Offset of the next event to be appended to the partition
+    public long endOffset(int partition) {
+        Partition log = partitions[partition];
+        synchronized (log) {
+            return log.startOffset + log.log.size();
+        }
+    }
+    
+    // Up to maxEvents events starting at offset; reading before the retained range starts at the oldest event
+    public List<OutboxEvent> read(int partition, long offset, int maxEvents) {
+        Partition log = partitions[partition];
+        synchronized (log) {
+            long from = Math.max(offset, log.startOffset);
+            List<OutboxEvent> events = new ArrayList<>();
+            int index = 0;
+            for (OutboxEvent event : log.log) {
+                if (events.size() >= maxEvents) {
+                    break;
+                }
+                if (log.startOffset + index++ >= from) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+    }
+    
+    private static class Partition {
+        private final ArrayDeque<OutboxEvent> log = new ArrayDeque<>();
+        private long startOffset;
+    }
+}
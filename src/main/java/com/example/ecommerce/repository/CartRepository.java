@@ -5,11 +5,9 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
-public interface CartRepository extends MongoRepository<CartItem, String> {
+public interface CartRepository extends MongoRepository<CartItem, String>, CartRepositoryCustom {
     List<CartItem> findByUserId(String userId);
     void deleteByUserId(String userId);
-    Optional<CartItem> findByUserIdAndProductId(String userId, String productId);
 }
@@ -0,0 +1,18 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.dto.CartItemWithProduct;
+import com.example.ecommerce.model.CartItem;
+
+import java.util.List;
+import java.util.Map;
+
+public interface CartRepositoryCustom {
+    // Joins cart items with their products server-side ($lookup) in one round-trip
+    List<CartItemWithProduct> findWithProductsByUserId(String userId);
+    
+    // Adds quantity to the user's line for the product, creating it if needed, in one atomic upsert
+    CartItem addQuantity(String userId, String productId, int quantity);
+    
+    // Makes the stored carts of the given users match the given items, in one bulk write
+    void replaceCarts(Map<String, List<CartItem>> itemsByUserId);
+}
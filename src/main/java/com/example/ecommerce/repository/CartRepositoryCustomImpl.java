@@ -0,0 +1,63 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.dto.CartItemWithProduct;
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class CartRepositoryCustomImpl implements CartRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public List<CartItemWithProduct> findWithProductsByUserId(String userId) {
+        String productCollection = mongoTemplate.getCollectionName(Product.class);
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId)),
+                Aggregation.lookup(productCollection, "productId", "_id", "product"),
+                Aggregation.unwind("product", true)
+        );
+        return mongoTemplate.aggregate(aggregation, CartItem.class, CartItemWithProduct.class).getMappedResults();
+    }
+    
+    @Override
+    public CartItem addQuantity(String userId, String productId, int quantity) {
+        Query query = Query.query(Criteria.where("userId").is(userId).and("productId").is(productId));
+        Update update = new Update()
+                .inc("quantity", quantity)
+                .setOnInsert("_id", UUID.randomUUID().toString());
+        return mongoTemplate.findAndModify(
+                query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), CartItem.class);
+    }
+    
+    @Override
+    public void replaceCarts(Map<String, List<CartItem>> itemsByUserId) {
+        if (itemsByUserId.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CartItem.class);
+        itemsByUserId.forEach((userId, items) -> {
+            List<String> productIds = items.stream().map(CartItem::getProductId).toList();
+            bulkOperations.remove(Query.query(Criteria.where("userId").is(userId).and("productId").nin(productIds)));
+            // Keyed on (userId, productId) like the unique index, so a line created elsewhere is updated, not duplicated
+            for (CartItem item : items) {
+                bulkOperations.upsert(
+                        Query.query(Criteria.where("userId").is(userId).and("productId").is(item.getProductId())),
+                        new Update().set("quantity", item.getQuantity()).setOnInsert("_id", item.getId()));
+            }
+        });
+        bulkOperations.execute();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.InventoryShard;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InventoryShardRepository extends MongoRepository<InventoryShard, String>, InventoryShardRepositoryCustom {
+    List<InventoryShard> findByProductIdOrderByStockDesc(String productId);
+}
@@ -0,0 +1,12 @@
+package com.example.ecommerce.repository;
+
+import java.util.Map;
+
+public interface InventoryShardRepositoryCustom {
+    // Guarded $inc on one shard; false when the shard has less than quantity
+    boolean decrementStock(String productId, int shard, int quantity);
+    void incrementStock(String productId, int shard, int quantity);
+    
+    // productId -> total stock over all of its shards
+    Map<String, Integer> sumStockByProduct();
+}
@@ -0,0 +1,42 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.InventoryShard;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class InventoryShardRepositoryCustomImpl implements InventoryShardRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public boolean decrementStock(String productId, int shard, int quantity) {
+        Query query = Query.query(Criteria.where("id").is(InventoryShard.shardId(productId, shard)).and("stock").gte(quantity));
+        return mongoTemplate.updateFirst(query, new Update().inc("stock", -quantity), InventoryShard.class)
+                .getModifiedCount() == 1;
+    }
+    
+    @Override
+    public void incrementStock(String productId, int shard, int quantity) {
+        Query query = Query.query(Criteria.where("id").is(InventoryShard.shardId(productId, shard)));
+        mongoTemplate.updateFirst(query, new Update().inc("stock", quantity), InventoryShard.class);
+    }
+    
+    @Override
+    public Map<String, Integer> sumStockByProduct() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group("productId").sum("stock").as("stock"));
+        Map<String, Integer> totals = new HashMap<>();
+        mongoTemplate.aggregate(aggregation, InventoryShard.class, Document.class)
+                .forEach(total -> totals.put(total.getString("_id"), ((Number) total.get("stock")).intValue()));
+        return totals;
+    }
+}
@@ -1,12 +1,24 @@
 package com.example.ecommerce.repository;
 
 import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface OrderRepository extends MongoRepository<Order, String> {
+public interface OrderRepository extends MongoRepository<Order, String>, OrderRepositoryCustom {
     List<Order> findByUserId(String userId);
+    
+    // Orders written before line items were embedded, walked by _id
+    List<Order> findByItemsIsNullAndIdGreaterThan(String id, Pageable pageable);
+    
+    // Both bounds exclusive
+    List<Order> findByStatusAndCreatedAtBetween(OrderStatus status, Instant createdAfter, Instant createdBefore, Pageable pageable);
+    
+    List<Order> findByIdInAndStockReleasedTrue(Collection<String> ids);
 }
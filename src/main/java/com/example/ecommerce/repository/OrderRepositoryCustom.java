@@ -0,0 +1,23 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.model.OrderStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface OrderRepositoryCustom {
+    // Bulk-embeds line items into orders that do not have them yet; returns the number of orders updated
+    long embedItems(Map<String, List<OrderItem>> itemsByOrderId);
+    
+    // One bulk write of status changes; returns the number of orders matched
+    long bulkUpdateStatus(Map<String, OrderStatus> statusByOrderId);
+    
+    void setStockReleased(Collection<String> orderIds, boolean released);
+    
+    // Newest first, keyset-paginated on (createdAt, _id); items are left out unless requested
+    List<Order> findHistoryPage(String userId, Instant beforeCreatedAt, String beforeId, int limit, boolean includeItems);
+}
@@ -0,0 +1,77 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.model.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public long embedItems(Map<String, List<OrderItem>> itemsByOrderId) {
+        if (itemsByOrderId.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        // The items == null guard keeps the backfill from overwriting orders written in the meantime
+        itemsByOrderId.forEach((orderId, items) -> bulkOperations.updateOne(
+                Query.query(Criteria.where("id").is(orderId).and("items").is(null)),
+                new Update().set("items", items)));
+        return bulkOperations.execute().getModifiedCount();
+    }
+    
+    @Override
+    public long bulkUpdateStatus(Map<String, OrderStatus> statusByOrderId) {
+        if (statusByOrderId.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        statusByOrderId.forEach((orderId, status) -> bulkOperations.updateOne(
+                Query.query(Criteria.where("id").is(orderId)),
+                new Update().set("status", status)));
+        return bulkOperations.execute().getMatchedCount();
+    }
+    
+    @Override
+    public void setStockReleased(Collection<String> orderIds, boolean released) {
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(orderIds)),
+                new Update().set("stockReleased", released),
+                Order.class);
+    }
+    
+    @Override
+    public List<Order> findHistoryPage(String userId, Instant beforeCreatedAt, String beforeId, int limit,
+                                       boolean includeItems) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (beforeCreatedAt != null) {
+            // _id breaks ties between orders created in the same instant
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").lt(beforeCreatedAt),
+                    Criteria.where("createdAt").is(beforeCreatedAt).and("id").lt(beforeId));
+        }
+        
+        // Filter and sort are both served by the {userId: 1, createdAt: -1, _id: -1} index, so there is no in-memory sort
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")))
+                .limit(limit);
+        if (!includeItems) {
+            query.fields().exclude("items");
+        }
+        return mongoTemplate.find(query, Order.class);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.ecommerce.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+
+public interface OutboxEventRepositoryCustom {
+    void markPublished(Collection<String> ids, Instant publishedAt);
+}
@@ -0,0 +1,28 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Collection;
+
+@RequiredArgsConstructor
+public class OutboxEventRepositoryCustomImpl implements OutboxEventRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public void markPublished(Collection<String> ids, Instant publishedAt) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(ids).and("publishedAt").is(null)),
+                new Update().set("publishedAt", publishedAt),
+                OutboxEvent.class);
+    }
+}
@@ -1,13 +1,20 @@
 package com.example.ecommerce.repository;
 
 import com.example.ecommerce.model.Payment;
+import com.example.ecommerce.model.PaymentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PaymentRepository extends MongoRepository<Payment, String> {
+public interface PaymentRepository extends MongoRepository<Payment, String>, PaymentRepositoryCustom {
     Optional<Payment> findByOrderId(String orderId);
+    List<Payment> findByOrderIdIn(Collection<String> orderIds);
     Optional<Payment> findByPaymentId(String paymentId);
+    List<Payment> findByStatusAndCreatedAtBefore(PaymentStatus status, Instant createdBefore, Pageable pageable);
 }
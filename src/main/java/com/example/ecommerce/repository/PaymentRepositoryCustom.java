@@ -0,0 +1,20 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Payment;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface PaymentRepositoryCustom {
+    // One ordered bulk write setting status and external paymentId on each payment (matched by id)
+    long bulkUpdateStatus(List<Payment> payments);
+    
+    // Fails the payments still PENDING with one guarded write; returns the IDs it changed, leaving out any
+    // that a webhook moved on since they were read
+    Set<String> expireIfPending(Collection<String> ids, Instant expiredAt);
+    
+    // Stores the provider's ID on a payment that is still PENDING; false once a webhook has moved it on
+    boolean setPaymentIdIfPending(String id, String paymentId);
+}
@@ -0,0 +1,61 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Payment;
+import com.example.ecommerce.model.PaymentStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class PaymentRepositoryCustomImpl implements PaymentRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public long bulkUpdateStatus(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Payment.class);
+        for (Payment payment : payments) {
+            bulkOperations.updateOne(
+                    Query.query(Criteria.where("id").is(payment.getId())),
+                    new Update().set("status", payment.getStatus()).set("paymentId", payment.getPaymentId()));
+        }
+        return bulkOperations.execute().getMatchedCount();
+    }
+    
+    @Override
+    public Set<String> expireIfPending(Collection<String> ids, Instant expiredAt) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        expiredAt = expiredAt.truncatedTo(ChronoUnit.MILLIS); // Stored precision, so the update can be read back by it
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(ids).and("status").is(PaymentStatus.PENDING)),
+                new Update().set("status", PaymentStatus.FAILED).set("expiredAt", expiredAt),
+                Payment.class);
+        Query expiredQuery = Query.query(Criteria.where("id").in(ids).and("expiredAt").is(expiredAt));
+        expiredQuery.fields().include("id");
+        Set<String> expired = new HashSet<>();
+        mongoTemplate.find(expiredQuery, Payment.class).forEach(payment -> expired.add(payment.getId()));
+        return expired;
+    }
+    
+    @Override
+    public boolean setPaymentIdIfPending(String id, String paymentId) {
+        Query query = Query.query(Criteria.where("id").is(id).and("status").is(PaymentStatus.PENDING));
+        return mongoTemplate.updateFirst(query, new Update().set("paymentId", paymentId), Payment.class)
+                .getMatchedCount() > 0;
+    }
+}
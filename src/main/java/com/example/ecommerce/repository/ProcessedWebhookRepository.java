@@ -0,0 +1,9 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.ProcessedWebhook;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProcessedWebhookRepository extends MongoRepository<ProcessedWebhook, String>, ProcessedWebhookRepositoryCustom {
+}
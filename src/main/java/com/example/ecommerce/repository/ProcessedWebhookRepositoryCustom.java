@@ -0,0 +1,10 @@
+package com.example.ecommerce.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+
+public interface ProcessedWebhookRepositoryCustom {
+    // Inserts a marker per key; returns the keys that were already recorded (duplicate key errors)
+    Set<String> insertAll(Collection<String> keys, Instant processedAt);
+}
@@ -0,0 +1,46 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.ProcessedWebhook;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class ProcessedWebhookRepositoryCustomImpl implements ProcessedWebhookRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public Set<String> insertAll(Collection<String> keys, Instant processedAt) {
+        Set<String> duplicates = new HashSet<>();
+        if (keys.isEmpty()) {
+            return duplicates;
+        }
+        List<String> ordered = new ArrayList<>(keys);
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProcessedWebhook.class);
+        for (String key : ordered) {
+            bulkOperations.insert(new ProcessedWebhook(key, processedAt));
+        }
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            // The _id is the key, so a duplicate key error means another delivery recorded it first
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != 11000) {
+                    throw e;
+                }
+                duplicates.add(ordered.get(error.getIndex()));
+            }
+        }
+        return duplicates;
+    }
+}
@@ -1,9 +1,24 @@
 package com.example.ecommerce.repository;
 
+import com.example.ecommerce.dto.ProductSummary;
 import com.example.ecommerce.model.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
-public interface ProductRepository extends MongoRepository<Product, String> {
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
+    // Keyset pagination on _id; the pageable carries the limit and sort only
+    List<Product> findAllBy(Pageable pageable);
+    List<Product> findByIdGreaterThan(String id, Pageable pageable);
+    
+    // Cursor-backed stream; callers must close it
+    Stream<Product> streamAllBy();
+    
+    // Projection without stock, for the product cache and checkout pricing
+    List<ProductSummary> findSummariesByIdIn(Collection<String> ids);
 }
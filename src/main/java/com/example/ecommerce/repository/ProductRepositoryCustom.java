@@ -0,0 +1,27 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface ProductRepositoryCustom {
+    // Single findAndModify; empty when the product is missing, has less than quantity in stock or has sharded
+    // inventory (whose stock lives in inventory_shards)
+    Optional<Product> decrementStock(String productId, int quantity);
+    Optional<Product> incrementStock(String productId, int quantity);
+    
+    // One bulk write of guarded decrements; returns how many products matched the guard
+    long decrementStocks(Map<String, Integer> quantitiesByProductId);
+    long incrementStocks(Map<String, Integer> quantitiesByProductId);
+    
+    // Switches a product to sharded inventory if its stock is still expectedStock
+    boolean enableInventoryShards(String productId, int expectedStock, int shards);
+    
+    // Writes the aggregated shard totals back to Product.stock
+    void updateShardedStock(Map<String, Integer> stockByProductId);
+    
+    // One unordered bulk upsert by id; returns an error message per failed position in the list
+    Map<Integer, String> upsertProducts(List<Product> products);
+}
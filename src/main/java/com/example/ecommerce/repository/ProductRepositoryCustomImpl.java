@@ -0,0 +1,113 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Product;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public Optional<Product> decrementStock(String productId, int quantity) {
+        // The stock guard and the $inc are applied atomically on the server, so concurrent buyers cannot oversell
+        Query query = Query.query(Criteria.where("id").is(productId).and("stock").gte(quantity).and("inventoryShards").is(null));
+        Update update = new Update().inc("stock", -quantity);
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                query, update, FindAndModifyOptions.options().returnNew(true), Product.class));
+    }
+    
+    @Override
+    public Optional<Product> incrementStock(String productId, int quantity) {
+        Query query = Query.query(Criteria.where("id").is(productId).and("inventoryShards").is(null));
+        Update update = new Update().inc("stock", quantity);
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                query, update, FindAndModifyOptions.options().returnNew(true), Product.class));
+    }
+    
+    @Override
+    public long decrementStocks(Map<String, Integer> quantitiesByProductId) {
+        if (quantitiesByProductId.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantitiesByProductId.forEach((productId, quantity) -> bulkOperations.updateOne(
+                Query.query(Criteria.where("id").is(productId).and("stock").gte(quantity).and("inventoryShards").is(null)),
+                new Update().inc("stock", -quantity)));
+        return bulkOperations.execute().getMatchedCount();
+    }
+    
+    @Override
+    public long incrementStocks(Map<String, Integer> quantitiesByProductId) {
+        if (quantitiesByProductId.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantitiesByProductId.forEach((productId, quantity) -> bulkOperations.updateOne(
+                Query.query(Criteria.where("id").is(productId).and("inventoryShards").is(null)),
+                new Update().inc("stock", quantity)));
+        return bulkOperations.execute().getMatchedCount();
+    }
+    
+    @Override
+    public boolean enableInventoryShards(String productId, int expectedStock, int shards) {
+        Query query = Query.query(Criteria.where("id").is(productId).and("stock").is(expectedStock).and("inventoryShards").is(null));
+        return mongoTemplate.updateFirst(query, new Update().set("inventoryShards", shards), Product.class)
+                .getModifiedCount() == 1;
+    }
+    
+    @Override
+    public void updateShardedStock(Map<String, Integer> stockByProductId) {
+        if (stockByProductId.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        stockByProductId.forEach((productId, stock) -> bulkOperations.updateOne(
+                Query.query(Criteria.where("id").is(productId).and("inventoryShards").gt(0)),
+                new Update().set("stock", stock)));
+        bulkOperations.execute();
+    }
+    
+    @Override
+    public Map<Integer, String> upsertProducts(List<Product> products) {
+        Map<Integer, String> errors = new HashMap<>();
+        if (products.isEmpty()) {
+            return errors;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Product product : products) {
+            // Sharded products keep their stock in inventory_shards; the guard turns their upsert into a duplicate key error
+            bulkOperations.upsert(
+                    Query.query(Criteria.where("id").is(product.getId()).and("inventoryShards").is(null)),
+                    new Update()
+                            .set("name", product.getName())
+                            .set("description", product.getDescription())
+                            .set("price", product.getPrice())
+                            .set("stock", product.getStock()));
+        }
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            // Unordered: every other write of the batch has been applied
+            for (BulkWriteError error : e.getErrors()) {
+                errors.put(error.getIndex(), error.getCode() == 11000
+                        ? "Product has sharded inventory; stock is managed in inventory_shards"
+                        : error.getMessage());
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Order;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveOrderRepository extends ReactiveMongoRepository<Order, String> {
+}
@@ -0,0 +1,9 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.SchedulerLease;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SchedulerLeaseRepository extends MongoRepository<SchedulerLease, String>, SchedulerLeaseRepositoryCustom {
+}
@@ -0,0 +1,10 @@
+package com.example.ecommerce.repository;
+
+import java.time.Instant;
+
+public interface SchedulerLeaseRepositoryCustom {
+    // Takes the lease if it is free or expired, or extends it if the owner already holds it
+    boolean tryAcquire(String name, String owner, Instant now, Instant expiresAt);
+    
+    void release(String name, String owner);
+}
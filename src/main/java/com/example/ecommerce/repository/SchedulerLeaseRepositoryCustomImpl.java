@@ -0,0 +1,38 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.SchedulerLease;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+
+@RequiredArgsConstructor
+public class SchedulerLeaseRepositoryCustomImpl implements SchedulerLeaseRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public boolean tryAcquire(String name, String owner, Instant now, Instant expiresAt) {
+        Query query = Query.query(Criteria.where("id").is(name).orOperator(
+                Criteria.where("owner").is(owner),
+                Criteria.where("expiresAt").lt(now)));
+        try {
+            // Held by someone else: the filter misses, and the upsert collides with the existing _id
+            mongoTemplate.upsert(query, new Update().set("owner", owner).set("expiresAt", expiresAt), SchedulerLease.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+    
+    @Override
+    public void release(String name, String owner) {
+        mongoTemplate.remove(
+                Query.query(Criteria.where("id").is(name).and("owner").is(owner)),
+                SchedulerLease.class);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.ReservationStatus;
+import com.example.ecommerce.model.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends MongoRepository<StockReservation, String>, StockReservationRepositoryCustom {
+    List<StockReservation> findByUserIdAndStatus(String userId, ReservationStatus status);
+    
+    List<StockReservation> findByStatusAndExpiresAtBefore(ReservationStatus status, Instant expiresAt, Pageable pageable);
+}
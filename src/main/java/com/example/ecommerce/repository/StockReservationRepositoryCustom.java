@@ -0,0 +1,8 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.ReservationStatus;
+
+public interface StockReservationRepositoryCustom {
+    // Moves a HELD reservation to a final state; false when it was no longer HELD (consumed, released or swept)
+    boolean close(String reservationId, ReservationStatus status, String orderId);
+}
@@ -0,0 +1,28 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.ReservationStatus;
+import com.example.ecommerce.model.StockReservation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+
+@RequiredArgsConstructor
+public class StockReservationRepositoryCustomImpl implements StockReservationRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public boolean close(String reservationId, ReservationStatus status, String orderId) {
+        // The HELD guard decides races between checkout, cart clearing and the expiry sweeper
+        Query query = Query.query(Criteria.where("id").is(reservationId).and("status").is(ReservationStatus.HELD));
+        Update update = new Update().set("status", status).set("closedAt", Instant.now());
+        if (orderId != null) {
+            update.set("orderId", orderId);
+        }
+        return mongoTemplate.updateFirst(query, update, StockReservation.class).getModifiedCount() == 1;
+    }
+}
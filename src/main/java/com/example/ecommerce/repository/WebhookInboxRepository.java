@@ -0,0 +1,9 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.WebhookInboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WebhookInboxRepository extends MongoRepository<WebhookInboxEvent, String>, WebhookInboxRepositoryCustom {
+}
@@ -0,0 +1,26 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.WebhookInboxEvent;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface WebhookInboxRepositoryCustom {
+    // Claims up to limit due events for owner, oldest first, skipping orders with an earlier event waiting for a retry.
+    // The order keys of the claimed events are leased to owner until leaseUntil; release them with releaseOrderKeys.
+    List<WebhookInboxEvent> claimDue(String owner, int limit, Instant now, Instant leaseUntil);
+    
+    void releaseOrderKeys(Collection<String> orderKeys, String owner);
+    
+    // Hands events claimed before the cutoff (e.g. by a node that died) back to the queue
+    long releaseStaleClaims(Instant claimedBefore);
+    
+    void markDone(Collection<String> ids, Instant processedAt);
+    
+    void markRetry(Collection<String> ids, String error, Instant nextAttemptAt);
+    
+    void markFailed(Collection<String> ids, String error);
+    
+    void releaseClaims(Collection<String> ids);
+}
@@ -0,0 +1,170 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.WebhookInboxEvent;
+import com.example.ecommerce.model.WebhookInboxLease;
+import com.example.ecommerce.model.WebhookInboxStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.util.MongoDbErrorCodes;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class WebhookInboxRepositoryCustomImpl implements WebhookInboxRepositoryCustom {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public List<WebhookInboxEvent> claimDue(String owner, int limit, Instant now, Instant leaseUntil) {
+        now = now.truncatedTo(ChronoUnit.MILLIS); // Stored precision, so the claim can be read back by claimedAt
+        Query dueQuery = Query.query(Criteria.where("status").is(WebhookInboxStatus.PENDING).and("nextAttemptAt").lte(now))
+                .with(Sort.by("receivedAt"))
+                .limit(limit);
+        dueQuery.fields().include("id", "orderKey");
+        List<WebhookInboxEvent> due = mongoTemplate.find(dueQuery, WebhookInboxEvent.class);
+        if (due.isEmpty()) {
+            return List.of();
+        }
+        
+        // Only orders leased to this node are claimed, so another node cannot apply a later event of the same order
+        // ahead of one this node holds
+        Set<String> dueKeys = new HashSet<>();
+        due.forEach(event -> dueKeys.add(event.getOrderKey()));
+        Set<String> orderKeys = leaseOrderKeys(dueKeys, owner, now, leaseUntil);
+        if (orderKeys.isEmpty()) {
+            return List.of();
+        }
+        
+        // An order whose earlier event is backing off must not have later events applied ahead of it
+        Query blockedQuery = Query.query(Criteria.where("orderKey").in(orderKeys)
+                .and("status").in(WebhookInboxStatus.PENDING, WebhookInboxStatus.PROCESSING)
+                .orOperator(
+                        Criteria.where("status").is(WebhookInboxStatus.PROCESSING),
+                        Criteria.where("nextAttemptAt").gt(now)));
+        Set<String> blocked = new HashSet<>(mongoTemplate.findDistinct(
+                blockedQuery, "orderKey", WebhookInboxEvent.class, String.class));
+        
+        List<String> ids = due.stream()
+                .filter(event -> orderKeys.contains(event.getOrderKey()) && !blocked.contains(event.getOrderKey()))
+                .map(WebhookInboxEvent::getId)
+                .toList();
+        List<WebhookInboxEvent> claimed = List.of();
+        if (!ids.isEmpty()) {
+            // The status guard makes the claim safe against a stale claim being re-queued meanwhile
+            mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("id").in(ids).and("status").is(WebhookInboxStatus.PENDING)),
+                    new Update().set("status", WebhookInboxStatus.PROCESSING).set("claimedBy", owner).set("claimedAt", now),
+                    WebhookInboxEvent.class);
+            claimed = mongoTemplate.find(
+                    Query.query(Criteria.where("id").in(ids).and("claimedBy").is(owner).and("claimedAt").is(now))
+                            .with(Sort.by("receivedAt")),
+                    WebhookInboxEvent.class);
+        }
+        
+        // Orders that ended up with nothing claimed are free for other nodes straight away
+        Set<String> unclaimedKeys = new HashSet<>(orderKeys);
+        claimed.forEach(event -> unclaimedKeys.remove(event.getOrderKey()));
+        releaseOrderKeys(unclaimedKeys, owner);
+        return claimed;
+    }
+    
+    // One upsert per key; a key held by another node misses the filter and collides with the existing _id
+    private Set<String> leaseOrderKeys(Set<String> orderKeys, String owner, Instant now, Instant leaseUntil) {
+        BulkOperations leases = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, WebhookInboxLease.class);
+        for (String orderKey : orderKeys) {
+            leases.upsert(
+                    Query.query(Criteria.where("id").is(orderKey).orOperator(
+                            Criteria.where("owner").is(owner),
+                            Criteria.where("expiresAt").lt(now))),
+                    new Update().set("owner", owner).set("expiresAt", leaseUntil));
+        }
+        try {
+            leases.execute();
+        } catch (DuplicateKeyException e) {
+            // The other upserts were still applied; which keys were won is read back below
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> !MongoDbErrorCodes.isDuplicateKeyCode(error.getCode()))) {
+                throw e;
+            }
+        }
+        Query heldQuery = Query.query(Criteria.where("id").in(orderKeys).and("owner").is(owner));
+        heldQuery.fields().include("id");
+        Set<String> held = new HashSet<>();
+        mongoTemplate.find(heldQuery, WebhookInboxLease.class).forEach(lease -> held.add(lease.getId()));
+        return held;
+    }
+    
+    @Override
+    public void releaseOrderKeys(Collection<String> orderKeys, String owner) {
+        if (orderKeys.isEmpty()) {
+            return;
+        }
+        mongoTemplate.remove(
+                Query.query(Criteria.where("id").in(orderKeys).and("owner").is(owner)),
+                WebhookInboxLease.class);
+    }
+    
+    @Override
+    public long releaseStaleClaims(Instant claimedBefore) {
+        return mongoTemplate.updateMulti(
+                Query.query(Criteria.where("status").is(WebhookInboxStatus.PROCESSING).and("claimedAt").lt(claimedBefore)),
+                new Update().set("status", WebhookInboxStatus.PENDING).unset("claimedBy").unset("claimedAt"),
+                WebhookInboxEvent.class).getModifiedCount();
+    }
+    
+    @Override
+    public void markDone(Collection<String> ids, Instant processedAt) {
+        updateClaimed(ids, new Update()
+                .set("status", WebhookInboxStatus.DONE)
+                .set("processedAt", processedAt)
+                .inc("attempts", 1));
+    }
+    
+    @Override
+    public void markRetry(Collection<String> ids, String error, Instant nextAttemptAt) {
+        updateClaimed(ids, new Update()
+                .set("status", WebhookInboxStatus.PENDING)
+                .set("nextAttemptAt", nextAttemptAt)
+                .set("lastError", error)
+                .inc("attempts", 1)
+                .unset("claimedBy")
+                .unset("claimedAt"));
+    }
+    
+    @Override
+    public void markFailed(Collection<String> ids, String error) {
+        updateClaimed(ids, new Update()
+                .set("status", WebhookInboxStatus.FAILED)
+                .set("lastError", error)
+                .inc("attempts", 1));
+    }
+    
+    @Override
+    public void releaseClaims(Collection<String> ids) {
+        updateClaimed(ids, new Update()
+                .set("status", WebhookInboxStatus.PENDING)
+                .unset("claimedBy")
+                .unset("claimedAt"));
+    }
+    
+    private void updateClaimed(Collection<String> ids, Update update) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(ids).and("status").is(WebhookInboxStatus.PROCESSING)),
+                update, WebhookInboxEvent.class);
+    }
+}
@@ -1,85 +1,97 @@
 package com.example.ecommerce.service;
 
 import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.ProductSummary;
 import com.example.ecommerce.model.CartItem;
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.repository.CartRepository;
+import com.example.ecommerce.store.CartStore;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class CartService {
     
     private final CartRepository cartRepository;
+    private final CartStore cartStore;
     private final ProductService productService;
+    private final InventoryReservationService inventoryReservationService;
+    
+    @Value("${cart.view.lookup:batch}")
+    private String cartViewLookup; // Options: batch, aggregate
     
     @Transactional
     public CartItem addToCart(AddToCartRequest request) {
-        // Validate product exists
-        Product product = productService.getProductById(request.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found: " + request.getProductId()));
-        
-        // Check stock availability
-        if (product.getStock() < request.getQuantity()) {
-            throw new RuntimeException("Insufficient stock. Available: " + product.getStock());
-        }
-        
-        // Check if item already in cart
-        Optional<CartItem> existingItem = cartRepository.findByUserIdAndProductId(
-                request.getUserId(), request.getProductId());
-        
-        if (existingItem.isPresent()) {
-            // Update quantity
-            CartItem cartItem = existingItem.get();
-            cartItem.setQuantity(cartItem.getQuantity() + request.getQuantity());
-            return cartRepository.save(cartItem);
+        if (inventoryReservationService.isEnabled()) {
+            // Hold the quantity until checkout or until the hold expires
+            inventoryReservationService.reserve(request.getUserId(), request.getProductId(), request.getQuantity());
         } else {
-            // Add new item
-            CartItem cartItem = new CartItem();
-            cartItem.setId(UUID.randomUUID().toString());
-            cartItem.setUserId(request.getUserId());
-            cartItem.setProductId(request.getProductId());
-            cartItem.setQuantity(request.getQuantity());
-            return cartRepository.save(cartItem);
+            // Validate product exists
+            Product product = productService.getProductById(request.getProductId())
+                    .orElseThrow(() -> new RuntimeException("Product not found: " + request.getProductId()));
+            
+            // Check stock availability
+            if (product.getStock() < request.getQuantity()) {
+                throw new RuntimeException("Insufficient stock. Available: " + product.getStock());
+            }
         }
+        
+        // Adds to the existing line for the product, or creates it
+        return cartStore.addItem(request.getUserId(), request.getProductId(), request.getQuantity());
     }
     
     public List<CartItem> getUserCart(String userId) {
-        return cartRepository.findByUserId(userId);
+        return cartStore.findByUserId(userId);
     }
     
     @Transactional
     public void clearCart(String userId) {
-        cartRepository.deleteByUserId(userId);
+        if (inventoryReservationService.isEnabled()) {
+            // Holds already consumed by an order are not affected
+            inventoryReservationService.releaseHolds(userId);
+        }
+        cartStore.clear(userId);
     }
     
     public List<Map<String, Object>> getCartWithProducts(String userId) {
-        List<CartItem> cartItems = cartRepository.findByUserId(userId);
+        if ("aggregate".equalsIgnoreCase(cartViewLookup) && cartStore.isWriteThrough()) {
+            // Server-side $lookup join; a write-behind store may be ahead of cart_items
+            return cartRepository.findWithProductsByUserId(userId).stream()
+                    .map(item -> toCartItemMap(item.getId(), item.getProductId(), item.getQuantity(),
+                            item.getProduct() != null ? ProductSummary.of(item.getProduct()) : null))
+                    .toList();
+        }
+        
+        // Product metadata comes from the cache; misses are fetched in a single query
+        List<CartItem> cartItems = cartStore.findByUserId(userId);
+        Map<String, ProductSummary> products = productService.getProductSummaries(
+                cartItems.stream().map(CartItem::getProductId).collect(Collectors.toSet()));
         return cartItems.stream()
-                .map(item -> {
-                    Product product = productService.getProductById(item.getProductId())
-                            .orElse(null);
-                    Map<String, Object> itemMap = new HashMap<>();
-                    itemMap.put("id", item.getId());
-                    itemMap.put("productId", item.getProductId());
-                    itemMap.put("quantity", item.getQuantity());
-                    if (product != null) {
-                        Map<String, Object> productMap = new HashMap<>();
-                        productMap.put("id", product.getId());
-                        productMap.put("name", product.getName());
-                        productMap.put("price", product.getPrice());
-                        itemMap.put("product", productMap);
-                    }
-                    return itemMap;
-                })
+                .map(item -> toCartItemMap(item.getId(), item.getProductId(), item.getQuantity(),
+                        products.get(item.getProductId())))
                 .toList();
     }
+    
+    private Map<String, Object> toCartItemMap(String id, String productId, Integer quantity, ProductSummary product) {
+        Map<String, Object> itemMap = new HashMap<>();
+        itemMap.put("id", id);
+        itemMap.put("productId", productId);
+        itemMap.put("quantity", quantity);
+        if (product != null) {
+            Map<String, Object> productMap = new HashMap<>();
+            productMap.put("id", product.getId());
+            productMap.put("name", product.getName());
+            productMap.put("price", product.getPrice());
+            itemMap.put("product", productMap);
+        }
+        return itemMap;
+    }
 }
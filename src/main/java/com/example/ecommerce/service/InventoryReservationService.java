@@ -0,0 +1,227 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.ReservationStatus;
+import com.example.ecommerce.model.StockReservation;
+import com.example.ecommerce.repository.StockReservationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Time-limited stock holds for carts. A hold takes its quantity out of Product.stock straight away
+// and is recorded in stock_reservations; checkout consumes it, and expired holds are swept back.
+// Per-SKU in-memory counters turn away requests for sold-out SKUs without touching MongoDB.
+@Service
+@RequiredArgsConstructor
+public class InventoryReservationService {
+    
+    private final StockReservationRepository stockReservationRepository;
+    private final ProductService productService;
+    
+    // productId -> locally known available stock; a hint only, the guarded DB decrement decides
+    private final Map<String, StockCounter> counters = new ConcurrentHashMap<>();
+    
+    @Value("${inventory.reservations.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${inventory.reservations.hold-ttl:15m}")
+    private Duration holdTtl;
+    
+    // How long a counter is trusted before it is reloaded (other nodes take and return stock too)
+    @Value("${inventory.reservations.counter-ttl:2s}")
+    private Duration counterTtl;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Transactional
+    public StockReservation reserve(String userId, String productId, int quantity) {
+        StockCounter counter = counter(productId);
+        if (!counter.tryTake(quantity)) {
+            throw new RuntimeException("Insufficient stock. Available: " + Math.max(counter.available.get(), 0));
+        }
+        try {
+            productService.updateProductStock(productId, quantity);
+        } catch (RuntimeException e) {
+            // The counter was optimistic; reload it next time
+            counters.remove(productId, counter);
+            throw e;
+        }
+        
+        Instant now = Instant.now();
+        StockReservation reservation = new StockReservation();
+        reservation.setId(UUID.randomUUID().toString());
+        reservation.setUserId(userId);
+        reservation.setProductId(productId);
+        reservation.setQuantity(quantity);
+        reservation.setStatus(ReservationStatus.HELD);
+        reservation.setCreatedAt(now);
+        reservation.setExpiresAt(now.plus(holdTtl));
+        // A rolled back hold never took its stock
+        onRollback(() -> counter.give(quantity));
+        try {
+            return stockReservationRepository.save(reservation);
+        } catch (RuntimeException e) {
+            // Without a transaction nothing undoes the decrement, and the sweeper never sees an unsaved hold
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                productService.restoreProductStock(productId, quantity);
+                counter.give(quantity);
+            }
+            throw e;
+        }
+    }
+    
+    // Turns the user's holds into the order and returns how much of each line they cover.
+    // Held quantity beyond what is ordered goes back to stock.
+    @Transactional
+    public Map<String, Integer> consumeHolds(String userId, Map<String, Integer> quantities, String orderId) {
+        Map<String, Integer> held = new HashMap<>();
+        for (StockReservation reservation : stockReservationRepository.findByUserIdAndStatus(userId, ReservationStatus.HELD)) {
+            if (quantities.containsKey(reservation.getProductId())
+                    && stockReservationRepository.close(reservation.getId(), ReservationStatus.CONSUMED, orderId)) {
+                held.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+            }
+        }
+        
+        Map<String, Integer> covered = new HashMap<>();
+        Map<String, Integer> excess = new HashMap<>();
+        held.forEach((productId, quantity) -> {
+            int ordered = quantities.get(productId);
+            covered.put(productId, Math.min(quantity, ordered));
+            if (quantity > ordered) {
+                excess.put(productId, quantity - ordered);
+            }
+        });
+        giveBack(excess);
+        return covered;
+    }
+    
+    @Transactional
+    public void releaseHolds(String userId) {
+        Map<String, Integer> released = new HashMap<>();
+        for (StockReservation reservation : stockReservationRepository.findByUserIdAndStatus(userId, ReservationStatus.HELD)) {
+            if (stockReservationRepository.close(reservation.getId(), ReservationStatus.RELEASED, null)) {
+                released.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+            }
+        }
+        giveBack(released);
+    }
+    
+    // Returns up to limit expired holds to stock; returns how many were swept
+    @Transactional
+    public int expireDue(int limit) {
+        List<StockReservation> due = stockReservationRepository.findByStatusAndExpiresAtBefore(
+                ReservationStatus.HELD, Instant.now(), PageRequest.of(0, limit, Sort.by("expiresAt")));
+        Map<String, Integer> expired = new HashMap<>();
+        int swept = 0;
+        for (StockReservation reservation : due) {
+            if (stockReservationRepository.close(reservation.getId(), ReservationStatus.EXPIRED, null)) {
+                expired.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+                swept++;
+            }
+        }
+        giveBack(expired);
+        return swept;
+    }
+    
+    // Puts consumed hold quantities back, for checkouts that fail without a transaction to roll them back
+    public void returnStock(Map<String, Integer> quantities) {
+        giveBack(quantities);
+    }
+    
+    private void giveBack(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        productService.restoreProductStocks(quantities);
+        afterCommit(() -> quantities.forEach((productId, quantity) -> {
+            StockCounter counter = counters.get(productId);
+            if (counter != null) {
+                counter.give(quantity);
+            }
+        }));
+    }
+    
+    private StockCounter counter(String productId) {
+        long now = System.nanoTime();
+        StockCounter counter = counters.get(productId);
+        if (counter == null || now - counter.loadedAt >= counterTtl.toNanos()) {
+            // Loaded outside the map so a slow read does not block other SKUs; a racing reload is harmless
+            Product product = productService.getProductById(productId)
+                    .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
+            counter = new StockCounter(product.getStock(), now);
+            counters.put(productId, counter);
+        }
+        return counter;
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+    
+    private static final class StockCounter {
+        
+        private final AtomicInteger available;
+        private final long loadedAt;
+        
+        private StockCounter(int available, long loadedAt) {
+            this.available = new AtomicInteger(available);
+            this.loadedAt = loadedAt;
+        }
+        
+        // Lock-free: a hot SKU's callers only contend on one CAS, and a sold-out SKU fails without a write
+        boolean tryTake(int quantity) {
+            while (true) {
+                int current = available.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+        
+        void give(int quantity) {
+            available.addAndGet(quantity);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.InventoryShard;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.InventoryShardRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Stock of hot products split over inventory_shards. A decrement starts at a random shard and moves
+// on to its siblings, so concurrent buyers of one product write different documents.
+@Service
+@RequiredArgsConstructor
+public class InventoryShardService {
+    
+    private static final int MAX_SHARDS = 64;
+    
+    private final InventoryShardRepository inventoryShardRepository;
+    private final ProductRepository productRepository;
+    
+    // productId -> shard count, for every sharded product this node knows about. Product documents of
+    // sharded products refuse direct stock writes, so a product sharded elsewhere is found on first use.
+    private final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+    
+    public boolean isSharded(String productId) {
+        return shardCounts.containsKey(productId);
+    }
+    
+    // Records the layout of products that turned out to be sharded; returns those ids
+    public List<String> discover(Collection<Product> products) {
+        List<String> sharded = new ArrayList<>();
+        for (Product product : products) {
+            if (product.getInventoryShards() != null && product.getInventoryShards() > 0) {
+                shardCounts.put(product.getId(), product.getInventoryShards());
+                sharded.add(product.getId());
+            }
+        }
+        return sharded;
+    }
+    
+    @Transactional
+    public Product enableSharding(String productId, int shards) {
+        if (shards < 2 || shards > MAX_SHARDS) {
+            throw new RuntimeException("Shard count must be between 2 and " + MAX_SHARDS);
+        }
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
+        if (product.getInventoryShards() != null) {
+            throw new RuntimeException("Inventory is already sharded for product: " + productId);
+        }
+        
+        // Split the current stock evenly; the first shards take the remainder
+        int stock = product.getStock();
+        List<InventoryShard> slices = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            slices.add(new InventoryShard(InventoryShard.shardId(productId, shard), productId, shard,
+                    stock / shards + (shard < stock % shards ? 1 : 0)));
+        }
+        inventoryShardRepository.insert(slices);
+        
+        // Guarded on the stock we split, so a decrement that slipped in meanwhile is not lost
+        if (!productRepository.enableInventoryShards(productId, stock, shards)) {
+            inventoryShardRepository.deleteAll(slices);
+            throw new RuntimeException("Stock changed while sharding, please retry");
+        }
+        shardCounts.put(productId, shards);
+        product.setInventoryShards(shards);
+        return product;
+    }
+    
+    public boolean decrement(String productId, int quantity) {
+        int shards = shardCounts.get(productId);
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int offset = 0; offset < shards; offset++) {
+            if (inventoryShardRepository.decrementStock(productId, (start + offset) % shards, quantity)) {
+                return true;
+            }
+        }
+        return decrementAcrossShards(productId, quantity);
+    }
+    
+    public void increment(String productId, int quantity) {
+        int shards = shardCounts.get(productId);
+        inventoryShardRepository.incrementStock(productId, ThreadLocalRandom.current().nextInt(shards), quantity);
+    }
+    
+    // No single shard holds enough, so take what each one has, fullest first, and put it back on failure
+    private boolean decrementAcrossShards(String productId, int quantity) {
+        Map<Integer, Integer> taken = new HashMap<>();
+        int remaining = quantity;
+        for (InventoryShard shard : inventoryShardRepository.findByProductIdOrderByStockDesc(productId)) {
+            int take = Math.min(shard.getStock(), remaining);
+            if (take > 0 && inventoryShardRepository.decrementStock(productId, shard.getShard(), take)) {
+                taken.put(shard.getShard(), take);
+                remaining -= take;
+            }
+            if (remaining == 0) {
+                return true;
+            }
+        }
+        taken.forEach((shard, take) -> inventoryShardRepository.incrementStock(productId, shard, take));
+        return false;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderStatus;
+import com.example.ecommerce.model.Payment;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Pushes order and payment status changes to SSE subscribers. One change stream on the database,
+// opened with the first subscriber, serves every subscriber of this node; changes are fanned out by
+// order ID. Needs a replica set. The change stream thread only queues events: every subscriber has
+// its own buffer, drained on a small sender pool, so a slow client delays nobody but itself and is
+// dropped once orders.events.max-pending events are waiting for it.
+@Slf4j
+@Service
+public class OrderEventHub {
+    
+    private static final long RETRY_DELAY_MILLIS = 5000;
+    private static final Set<Integer> RESUME_FAILURE_CODES = Set.of(280, 286); // ChangeStreamFatalError, ChangeStreamHistoryLost
+    private static final Set<String> FINAL_ORDER_STATUSES = Set.of(
+            OrderStatus.PAID.name(), OrderStatus.FAILED.name(), OrderStatus.CANCELLED.name(),
+            OrderStatus.REFUND_REQUIRED.name());
+    
+    private final MongoTemplate mongoTemplate;
+    private final String ordersCollection;
+    private final String paymentsCollection;
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final ExecutorService sender;
+    private final int maxPending;
+    
+    @Value("${orders.events.timeout:10m}")
+    private Duration timeout;
+    
+    private boolean started;
+    private volatile boolean running;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private BsonDocument resumeToken;
+    
+    public OrderEventHub(MongoTemplate mongoTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${orders.events.sender-threads:4}") int senderThreads,
+                         @Value("${orders.events.max-pending:100}") int maxPending) {
+        this.mongoTemplate = mongoTemplate;
+        this.ordersCollection = mongoTemplate.getCollectionName(Order.class);
+        this.paymentsCollection = mongoTemplate.getCollectionName(Payment.class);
+        this.maxPending = maxPending;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "order-events-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("orders.events.subscribers", subscriptions,
+                        subscribed -> subscribed.values().stream().mapToInt(Set::size).sum())
+                .register(meterRegistry);
+    }
+    
+    // The subscription is registered before the snapshot is read, and changes arriving meanwhile wait in its
+    // buffer until the snapshot has been queued ahead of them, so none is missed. The read holds no lock.
+    public SseEmitter subscribe(String orderId, Supplier<Map<String, Object>> snapshot) {
+        start();
+        Subscription subscription = new Subscription(orderId, new SseEmitter(timeout.toMillis()));
+        subscriptions.compute(orderId, (key, subscribed) -> {
+            Set<Subscription> set = subscribed != null ? subscribed : ConcurrentHashMap.newKeySet();
+            set.add(subscription);
+            return set;
+        });
+        subscription.emitter.onCompletion(() -> unsubscribe(subscription));
+        subscription.emitter.onTimeout(() -> unsubscribe(subscription));
+        subscription.emitter.onError(error -> unsubscribe(subscription));
+        
+        Map<String, Object> state;
+        try {
+            state = snapshot.get();
+        } catch (RuntimeException e) {
+            unsubscribe(subscription);
+            throw e;
+        }
+        subscription.start(SseEmitter.event().name("snapshot").data(state),
+                FINAL_ORDER_STATUSES.contains(String.valueOf(state.get("status"))));
+        return subscription.emitter;
+    }
+    
+    // Idle connections are dropped by proxies, and dead clients are only noticed on a write
+    @Scheduled(fixedDelayString = "${orders.events.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        subscriptions.values().forEach(subscribed -> subscribed.forEach(Subscription::heartbeat));
+    }
+    
+    private synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        running = true;
+        Thread thread = new Thread(this::run, "order-event-hub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void run() {
+        // Status changes only; the projection keeps the looked-up documents small
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.in("ns.coll", ordersCollection, paymentsCollection),
+                        Filters.or(
+                                Filters.in("operationType", "insert", "replace"),
+                                Filters.and(
+                                        Filters.eq("operationType", "update"),
+                                        Filters.exists("updateDescription.updatedFields.status"))))),
+                Aggregates.project(Projections.include(
+                        "operationType", "ns", "documentKey",
+                        "fullDocument._id", "fullDocument.orderId", "fullDocument.status", "fullDocument.amount")));
+        
+        while (running) {
+            try {
+                ChangeStreamIterable<Document> stream = mongoTemplate.getDb().watch(pipeline)
+                        .fullDocument(FullDocument.UPDATE_LOOKUP);
+                // Pick up where the previous stream broke off, so no change is lost in between
+                if (resumeToken != null) {
+                    stream = stream.resumeAfter(resumeToken);
+                }
+                cursor = stream.cursor();
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.next();
+                    resumeToken = change.getResumeToken();
+                    dispatch(change);
+                }
+            } catch (RuntimeException e) {
+                closeCursor();
+                if (!running) {
+                    return;
+                }
+                // History lost (the token fell off the oplog): start from now
+                if (e instanceof MongoServerException serverError && RESUME_FAILURE_CODES.contains(serverError.getCode())) {
+                    resumeToken = null;
+                }
+                log.warn("Order event change stream failed; retrying in {} ms", RETRY_DELAY_MILLIS, e);
+                sleep();
+            }
+        }
+    }
+    
+    private void dispatch(ChangeStreamDocument<Document> change) {
+        Document document = change.getFullDocument();
+        if (document == null || change.getNamespace() == null) {
+            return; // Deleted before the lookup
+        }
+        
+        boolean isOrder = ordersCollection.equals(change.getNamespace().getCollectionName());
+        String orderId = isOrder ? String.valueOf(document.get("_id")) : document.getString("orderId");
+        Set<Subscription> subscribed = orderId != null ? subscriptions.get(orderId) : null;
+        if (subscribed == null) {
+            return;
+        }
+        
+        Map<String, Object> data = new HashMap<>();
+        data.put("orderId", orderId);
+        data.put("status", document.getString("status"));
+        if (!isOrder) {
+            data.put("paymentId", String.valueOf(document.get("_id")));
+            data.put("amount", document.get("amount"));
+        }
+        boolean finished = isOrder && FINAL_ORDER_STATUSES.contains(document.getString("status"));
+        for (Subscription subscription : subscribed) {
+            // A builder accumulates state when built, so every subscriber gets its own
+            subscription.enqueue(SseEmitter.event().name(isOrder ? "order" : "payment").data(data), finished);
+        }
+    }
+    
+    private void unsubscribe(Subscription subscription) {
+        subscription.closed = true;
+        subscriptions.computeIfPresent(subscription.orderId, (key, subscribed) -> {
+            subscribed.remove(subscription);
+            return subscribed.isEmpty() ? null : subscribed;
+        });
+    }
+    
+    private void sleep() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeCursor();
+        subscriptions.values().forEach(subscribed -> subscribed.forEach(subscription -> subscription.emitter.complete()));
+        subscriptions.clear();
+        sender.shutdownNow();
+    }
+    
+    private void closeCursor() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (RuntimeException e) {
+                // Already broken
+            }
+        }
+    }
+    
+    // Events for one client, sent in order by at most one sender thread at a time
+    private class Subscription {
+        private final String orderId;
+        private final SseEmitter emitter;
+        private final Deque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean snapshotQueued; // Nothing is sent before the snapshot
+        private boolean draining;
+        private boolean completeWhenDrained;
+        private volatile boolean closed;
+        
+        private Subscription(String orderId, SseEmitter emitter) {
+            this.orderId = orderId;
+            this.emitter = emitter;
+        }
+        
+        private synchronized void start(SseEmitter.SseEventBuilder snapshot, boolean last) {
+            pending.addFirst(snapshot);
+            snapshotQueued = true;
+            completeWhenDrained |= last;
+            scheduleDrain();
+        }
+        
+        private void enqueue(SseEmitter.SseEventBuilder event, boolean last) {
+            synchronized (this) {
+                if (closed || completeWhenDrained) {
+                    return;
+                }
+                if (pending.size() < maxPending) {
+                    pending.addLast(event);
+                    completeWhenDrained = last;
+                    scheduleDrain();
+                    return;
+                }
+            }
+            // Too far behind; the client reconnects and starts over from a fresh snapshot
+            log.debug("Dropping SSE subscriber of order {} with {} events pending", orderId, maxPending);
+            complete();
+        }
+        
+        private void heartbeat() {
+            synchronized (this) {
+                if (!snapshotQueued || draining || !pending.isEmpty()) {
+                    return; // Events are on their way anyway
+                }
+            }
+            enqueue(SseEmitter.event().comment("keep-alive"), false);
+        }
+        
+        private void scheduleDrain() {
+            if (snapshotQueued && !draining && !closed) {
+                draining = true;
+                sender.execute(this::drain);
+            }
+        }
+        
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = pending.pollFirst();
+                    if (event == null) {
+                        draining = false;
+                        if (!completeWhenDrained) {
+                            return;
+                        }
+                    }
+                }
+                if (event == null) {
+                    complete();
+                    return;
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away
+                    unsubscribe(this);
+                    return;
+                }
+            }
+        }
+        
+        private void complete() {
+            unsubscribe(this);
+            emitter.complete();
+        }
+    }
+}
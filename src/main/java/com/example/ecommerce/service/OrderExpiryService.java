@@ -0,0 +1,109 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderStatus;
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.model.Payment;
+import com.example.ecommerce.model.PaymentStatus;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Gives up on checkouts that never completed, one bounded batch per transaction: the status changes,
+// the stock going back and the outbox events commit together. A batch that conflicts with a concurrent
+// webhook or checkout is run again.
+@Service
+@RequiredArgsConstructor
+public class OrderExpiryService {
+    
+    private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final OutboxService outboxService;
+    private final TransactionRunner transactionRunner;
+    
+    // PENDING payments created before the cutoff become FAILED, and so do their orders if still CREATED.
+    // Returns the number of payments expired; payments a webhook moved on meanwhile are not counted.
+    public int expireStalePayments(Instant createdBefore, int limit) {
+        return transactionRunner.execute(() -> expirePayments(createdBefore, limit));
+    }
+    
+    private int expirePayments(Instant createdBefore, int limit) {
+        List<Payment> payments = paymentRepository.findByStatusAndCreatedAtBefore(
+                PaymentStatus.PENDING, createdBefore, PageRequest.of(0, limit, Sort.by("createdAt")));
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        
+        // Guarded on PENDING: without a transaction a webhook can land after the read, and a payment it moved on
+        // must neither be overwritten nor have its order failed and its stock released
+        Set<String> expiredIds = paymentRepository.expireIfPending(
+                payments.stream().map(Payment::getId).toList(), Instant.now());
+        List<Payment> expired = payments.stream()
+                .filter(payment -> expiredIds.contains(payment.getId()))
+                .toList();
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        
+        Set<String> createdOrderIds = orderRepository.findAllById(expired.stream().map(Payment::getOrderId).toList())
+                .stream()
+                .filter(order -> order.getStatus() == OrderStatus.CREATED)
+                .map(Order::getId)
+                .collect(Collectors.toSet());
+        
+        List<OutboxEvent> outboxEvents = new ArrayList<>();
+        Map<String, OrderStatus> orderStatuses = new LinkedHashMap<>();
+        for (Payment payment : expired) {
+            payment.setStatus(PaymentStatus.FAILED);
+            outboxEvents.add(OutboxEvent.paymentStatusChanged(payment));
+            if (createdOrderIds.contains(payment.getOrderId())) {
+                orderStatuses.put(payment.getOrderId(), OrderStatus.FAILED);
+            }
+        }
+        
+        outboxService.recordAll(outboxEvents);
+        orderService.updateOrderStatuses(orderStatuses);
+        return expired.size();
+    }
+    
+    // CREATED orders from the (createdAfter, createdBefore) window that never got a payment become CANCELLED.
+    // Orders with a payment are left to expireStalePayments. Returns every order looked at, oldest first,
+    // so the caller can move the window past them.
+    public List<Order> cancelUnpaidOrders(Instant createdAfter, Instant createdBefore, int limit) {
+        return transactionRunner.execute(() -> cancelOrders(createdAfter, createdBefore, limit));
+    }
+    
+    private List<Order> cancelOrders(Instant createdAfter, Instant createdBefore, int limit) {
+        List<Order> orders = orderRepository.findByStatusAndCreatedAtBetween(
+                OrderStatus.CREATED, createdAfter, createdBefore, PageRequest.of(0, limit, Sort.by("createdAt")));
+        if (orders.isEmpty()) {
+            return orders;
+        }
+        
+        Set<String> paidForOrderIds = paymentRepository.findByOrderIdIn(orders.stream().map(Order::getId).toList())
+                .stream()
+                .map(Payment::getOrderId)
+                .collect(Collectors.toSet());
+        
+        Map<String, OrderStatus> orderStatuses = new LinkedHashMap<>();
+        for (Order order : orders) {
+            if (!paidForOrderIds.contains(order.getId())) {
+                orderStatuses.put(order.getId(), OrderStatus.CANCELLED);
+            }
+        }
+        orderService.updateOrderStatuses(orderStatuses);
+        return orders;
+    }
+}
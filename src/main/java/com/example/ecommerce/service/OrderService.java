@@ -1,18 +1,27 @@
 package com.example.ecommerce.service;
 
 import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.dto.ProductSummary;
 import com.example.ecommerce.model.*;
 import com.example.ecommerce.repository.OrderItemRepository;
 import com.example.ecommerce.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,9 +31,19 @@ public class OrderService {
     private final OrderItemRepository orderItemRepository;
     private final CartService cartService;
     private final ProductService productService;
+    private final InventoryReservationService inventoryReservationService;
+    private final OutboxService outboxService;
+    private final TransactionRunner transactionRunner;
     
-    @Transactional
+    @Value("${orders.history.max-page-size:100}")
+    private int maxHistoryPageSize;
+    
+    // Concurrent checkouts of one product conflict on its stock; the loser's transaction is run again
     public Order createOrder(CreateOrderRequest request) {
+        return transactionRunner.execute(() -> placeOrder(request));
+    }
+    
+    private Order placeOrder(CreateOrderRequest request) {
         // Get cart items
         List<CartItem> cartItems = cartService.getUserCart(request.getUserId());
         
@@ -32,43 +51,70 @@ public class OrderService {
             throw new RuntimeException("Cart is empty. Cannot create order.");
         }
         
-        // Calculate total and validate stock
+        Map<String, Integer> quantities = cartItems.stream()
+                .collect(Collectors.toMap(CartItem::getProductId, CartItem::getQuantity, Integer::sum, LinkedHashMap::new));
+        
+        // Prices are read from MongoDB, never the product cache, which can lag a price change made on another node.
+        // Stock is checked by the guarded decrements below.
+        Map<String, ProductSummary> products = productService.getCurrentProductSummaries(quantities.keySet());
         double totalAmount = 0.0;
-        for (CartItem cartItem : cartItems) {
-            Product product = productService.getProductById(cartItem.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + cartItem.getProductId()));
-            
-            if (product.getStock() < cartItem.getQuantity()) {
-                throw new RuntimeException("Insufficient stock for product: " + product.getName());
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            ProductSummary product = products.get(line.getKey());
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + line.getKey());
             }
             
-            totalAmount += product.getPrice() * cartItem.getQuantity();
+            totalAmount += product.getPrice() * line.getValue();
+        }
+        
+        String orderId = UUID.randomUUID().toString();
+        
+        // Lines covered by the user's stock holds are already out of stock; only the rest is taken now
+        Map<String, Integer> toDecrement = quantities;
+        Map<String, Integer> held = Map.of();
+        if (inventoryReservationService.isEnabled()) {
+            held = inventoryReservationService.consumeHolds(request.getUserId(), quantities, orderId);
+            toDecrement = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                int shortfall = line.getValue() - held.getOrDefault(line.getKey(), 0);
+                if (shortfall > 0) {
+                    toDecrement.put(line.getKey(), shortfall);
+                }
+            }
+        }
+        
+        // Take stock; the decrements are guarded so a short line, or a concurrent checkout that got there first, fails this one
+        try {
+            decrementStock(toDecrement);
+        } catch (RuntimeException e) {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                inventoryReservationService.returnStock(held);
+            }
+            throw e;
         }
         
         // Create order
         Order order = new Order();
-        order.setId(UUID.randomUUID().toString());
+        order.setId(orderId);
         order.setUserId(request.getUserId());
         order.setTotalAmount(totalAmount);
         order.setStatus(OrderStatus.CREATED);
         order.setCreatedAt(Instant.now());
-        order = orderRepository.save(order);
         
-        // Create order items and update stock
-        for (CartItem cartItem : cartItems) {
-            Product product = productService.getProductById(cartItem.getProductId()).orElseThrow();
-            
+        // Line items are embedded, so the order and its items are written atomically in one insert
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
             OrderItem orderItem = new OrderItem();
             orderItem.setId(UUID.randomUUID().toString());
             orderItem.setOrderId(order.getId());
-            orderItem.setProductId(cartItem.getProductId());
-            orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setPrice(product.getPrice());
-            orderItemRepository.save(orderItem);
-            
-            // Update product stock
-            productService.updateProductStock(cartItem.getProductId(), cartItem.getQuantity());
+            orderItem.setProductId(line.getKey());
+            orderItem.setQuantity(line.getValue());
+            orderItem.setPrice(products.get(line.getKey()).getPrice());
+            orderItems.add(orderItem);
         }
+        order.setItems(orderItems);
+        order = orderRepository.insert(order);
+        outboxService.record(OutboxEvent.orderStatusChanged(order.getId(), OrderStatus.CREATED));
         
         // Clear cart
         cartService.clearCart(request.getUserId());
@@ -76,6 +122,31 @@ public class OrderService {
         return order;
     }
     
+    private void decrementStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // One bulk write; a short line aborts the transaction and with it every other decrement
+            productService.updateProductStocks(quantities);
+            return;
+        }
+        
+        // Without a transaction manager fall back to per-line decrements with compensation
+        List<String> decremented = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                productService.updateProductStock(line.getKey(), line.getValue());
+                decremented.add(line.getKey());
+            }
+        } catch (RuntimeException e) {
+            for (String productId : decremented) {
+                productService.restoreProductStock(productId, quantities.get(productId));
+            }
+            throw e;
+        }
+    }
+    
     public Order getOrderById(String orderId) {
         return orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
@@ -85,15 +156,49 @@ public class OrderService {
     public void updateOrderStatus(String orderId, OrderStatus status) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-        order.setStatus(status);
+        OrderStatus applied = status;
+        if (releasesStock(status)) {
+            releaseStock(List.of(order));
+        } else if (status == OrderStatus.PAID && !retakeStock(order)) {
+            applied = OrderStatus.REFUND_REQUIRED;
+        }
+        order.setStatus(applied);
         orderRepository.save(order);
+        outboxService.record(OutboxEvent.orderStatusChanged(orderId, applied));
+    }
+    
+    @Transactional
+    public void updateOrderStatuses(Map<String, OrderStatus> statusByOrderId) {
+        List<String> releasedOrderIds = statusByOrderId.entrySet().stream()
+                .filter(entry -> releasesStock(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!releasedOrderIds.isEmpty()) {
+            releaseStock(orderRepository.findAllById(releasedOrderIds));
+        }
+        List<String> paidOrderIds = statusByOrderId.entrySet().stream()
+                .filter(entry -> entry.getValue() == OrderStatus.PAID)
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<String, OrderStatus> applied = new LinkedHashMap<>(statusByOrderId);
+        if (!paidOrderIds.isEmpty()) {
+            for (Order order : orderRepository.findByIdInAndStockReleasedTrue(paidOrderIds)) {
+                if (!retakeStock(order)) {
+                    applied.put(order.getId(), OrderStatus.REFUND_REQUIRED);
+                }
+            }
+        }
+        orderRepository.bulkUpdateStatus(applied);
+        outboxService.recordAll(applied.entrySet().stream()
+                .map(entry -> OutboxEvent.orderStatusChanged(entry.getKey(), entry.getValue()))
+                .toList());
     }
     
     @Transactional
     public Order cancelOrder(String orderId) {
         Order order = getOrderById(orderId);
         
-        if (order.getStatus() == OrderStatus.PAID) {
+        if (order.getStatus() == OrderStatus.PAID || order.getStatus() == OrderStatus.REFUND_REQUIRED) {
             throw new RuntimeException("Cannot cancel a paid order");
         }
         
@@ -101,29 +206,110 @@ public class OrderService {
             throw new RuntimeException("Order is already cancelled");
         }
         
-        // Restore stock for all order items
-        List<OrderItem> orderItems = orderItemRepository.findByOrderId(orderId);
-        for (OrderItem orderItem : orderItems) {
-            Product product = productService.getProductById(orderItem.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + orderItem.getProductId()));
-            product.setStock(product.getStock() + orderItem.getQuantity());
-            productService.createProduct(product); // Update product
-        }
+        // Restore stock for all order items, unless a failed payment already did
+        releaseStock(List.of(order));
         
         // Update order status
         order.setStatus(OrderStatus.CANCELLED);
-        return orderRepository.save(order);
+        order = orderRepository.save(order);
+        outboxService.record(OutboxEvent.orderStatusChanged(orderId, OrderStatus.CANCELLED));
+        return order;
+    }
+    
+    // Returns each order's items to stock exactly once, whichever of payment failure or cancellation comes
+    // first. Paid orders keep their stock.
+    private void releaseStock(List<Order> orders) {
+        Map<String, Integer> quantities = new HashMap<>();
+        List<String> releasedOrderIds = new ArrayList<>();
+        for (Order order : orders) {
+            if (Boolean.TRUE.equals(order.getStockReleased()) || order.getStatus() == OrderStatus.PAID) {
+                continue;
+            }
+            for (OrderItem orderItem : getOrderItems(order)) {
+                quantities.merge(orderItem.getProductId(), orderItem.getQuantity(), Integer::sum);
+            }
+            order.setStockReleased(true);
+            releasedOrderIds.add(order.getId());
+        }
+        if (releasedOrderIds.isEmpty()) {
+            return;
+        }
+        productService.restoreProductStocks(quantities);
+        orderRepository.setStockReleased(releasedOrderIds, true);
+    }
+    
+    // A payment can succeed after its order was expired and its stock returned. The stock is taken again line
+    // by line. If some of it has been sold in the meantime, the lines already taken go back and false is returned:
+    // the payment is still recorded, and the order goes to REFUND_REQUIRED instead of PAID.
+    private boolean retakeStock(Order order) {
+        if (!Boolean.TRUE.equals(order.getStockReleased())) {
+            return true;
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem orderItem : getOrderItems(order)) {
+            quantities.merge(orderItem.getProductId(), orderItem.getQuantity(), Integer::sum);
+        }
+        List<String> taken = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                productService.updateProductStock(line.getKey(), line.getValue());
+                taken.add(line.getKey());
+            }
+        } catch (DataAccessException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            for (String productId : taken) {
+                productService.restoreProductStock(productId, quantities.get(productId));
+            }
+            return false;
+        }
+        order.setStockReleased(false);
+        orderRepository.setStockReleased(List.of(order.getId()), false);
+        return true;
     }
     
-    public List<Order> getOrdersByUserId(String userId) {
-        return orderRepository.findByUserId(userId);
+    private static boolean releasesStock(OrderStatus status) {
+        return status == OrderStatus.FAILED || status == OrderStatus.CANCELLED;
     }
     
-    public List<Map<String, Object>> getOrderHistory(String userId) {
-        List<Order> orders = getOrdersByUserId(userId);
-        return orders.stream()
+    // Prefer the embedded items; orders not yet backfilled still read the order_items collection
+    public List<OrderItem> getOrderItems(Order order) {
+        if (order.getItems() != null) {
+            return order.getItems();
+        }
+        return orderItemRepository.findByOrderId(order.getId());
+    }
+    
+    public Map<String, Object> getOrderHistory(String userId, String cursor, int limit, boolean summary) {
+        int pageSize = Math.max(1, Math.min(limit, maxHistoryPageSize));
+        Instant beforeCreatedAt = null;
+        String beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor);
+            beforeCreatedAt = Instant.parse(position[0]);
+            beforeId = position[1];
+        }
+        
+        // Fetch one extra order to learn whether another page exists
+        List<Order> orders = orderRepository.findHistoryPage(userId, beforeCreatedAt, beforeId, pageSize + 1, !summary);
+        boolean hasMore = orders.size() > pageSize;
+        List<Order> page = hasMore ? orders.subList(0, pageSize) : orders;
+        
+        // Orders that predate embedded items get theirs with one $in query for the whole page
+        Map<String, List<OrderItem>> legacyItems = new HashMap<>();
+        if (!summary) {
+            List<String> legacyOrderIds = page.stream()
+                    .filter(order -> order.getItems() == null)
+                    .map(Order::getId)
+                    .toList();
+            if (!legacyOrderIds.isEmpty()) {
+                orderItemRepository.findByOrderIdIn(legacyOrderIds).forEach(item ->
+                        legacyItems.computeIfAbsent(item.getOrderId(), key -> new ArrayList<>()).add(item));
+            }
+        }
+        
+        List<Map<String, Object>> orderMaps = page.stream()
                 .map(order -> {
-                    List<OrderItem> orderItems = orderItemRepository.findByOrderId(order.getId());
                     Map<String, Object> orderMap = new HashMap<>();
                     orderMap.put("id", order.getId());
                     orderMap.put("userId", order.getUserId());
@@ -131,24 +317,56 @@ public class OrderService {
                     orderMap.put("status", order.getStatus().toString());
                     orderMap.put("createdAt", order.getCreatedAt());
                     
-                    List<Map<String, Object>> items = orderItems.stream()
-                            .map(item -> {
-                                Map<String, Object> itemMap = new HashMap<>();
-                                itemMap.put("productId", item.getProductId());
-                                itemMap.put("quantity", item.getQuantity());
-                                itemMap.put("price", item.getPrice());
-                                return itemMap;
-                            })
-                            .toList();
-                    orderMap.put("items", items);
+                    if (!summary) {
+                        List<OrderItem> orderItems = order.getItems() != null
+                                ? order.getItems()
+                                : legacyItems.getOrDefault(order.getId(), List.of());
+                        List<Map<String, Object>> items = orderItems.stream()
+                                .map(item -> {
+                                    Map<String, Object> itemMap = new HashMap<>();
+                                    itemMap.put("productId", item.getProductId());
+                                    itemMap.put("quantity", item.getQuantity());
+                                    itemMap.put("price", item.getPrice());
+                                    return itemMap;
+                                })
+                                .toList();
+                        orderMap.put("items", items);
+                    }
                     return orderMap;
                 })
                 .toList();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("orders", orderMaps);
+        response.put("nextCursor", hasMore ? encodeCursor(page.get(page.size() - 1)) : null);
+        return response;
+    }
+    
+    private String encodeCursor(Order order) {
+        String position = order.getCreatedAt() + "|" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            Instant.parse(parts[0]);
+            return parts;
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
     }
     
     public Map<String, Object> getOrderDetails(String orderId) {
-        Order order = getOrderById(orderId);
-        List<OrderItem> orderItems = orderItemRepository.findByOrderId(orderId);
+        return getOrderDetails(getOrderById(orderId));
+    }
+    
+    public Map<String, Object> getOrderDetails(Order order) {
+        List<OrderItem> orderItems = getOrderItems(order);
         
         Map<String, Object> response = new HashMap<>();
         response.put("id", order.getId());
@@ -0,0 +1,36 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+// Called from inside the transaction that changes an order or payment, so the event is committed
+// or rolled back together with the change
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    
+    private final OutboxEventRepository outboxEventRepository;
+    
+    @Value("${outbox.enabled:true}")
+    private boolean enabled;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void record(OutboxEvent event) {
+        recordAll(List.of(event));
+    }
+    
+    public void recordAll(List<OutboxEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        outboxEventRepository.insert(events);
+    }
+}
@@ -2,20 +2,29 @@ package com.example.ecommerce.service;
 
 import com.example.ecommerce.client.PaymentServiceClient;
 import com.example.ecommerce.dto.PaymentRequest;
+import com.example.ecommerce.dto.PaymentWebhookBatchResult;
+import com.example.ecommerce.dto.PaymentWebhookRequest;
 import com.example.ecommerce.model.Order;
 import com.example.ecommerce.model.OrderStatus;
+import com.example.ecommerce.model.OutboxEvent;
 import com.example.ecommerce.model.Payment;
 import com.example.ecommerce.model.PaymentStatus;
 import com.example.ecommerce.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,11 +34,16 @@ public class PaymentService {
     private final OrderService orderService;
     private final PaymentServiceClient paymentServiceClient;
     private final RazorpayService razorpayService;
+    private final WebhookIdempotencyService webhookIdempotencyService;
+    private final OutboxService outboxService;
+    private final TransactionRunner transactionRunner;
     
     @Value("${payment.provider:mock}")
     private String paymentProvider;
     
-    @Transactional
+    // The PENDING payment is committed on its own and the provider is called outside any transaction, so no
+    // session or document lock is held for the length of the HTTP call. The provider's ID and the outbox event
+    // then go into one short transaction. A failed call removes the payment it was made for.
     public Map<String, Object> createPayment(PaymentRequest request) {
         // Validate order exists and is in CREATED status
         Order order = orderService.getOrderById(request.getOrderId());
@@ -49,84 +63,232 @@ public class PaymentService {
         payment.setAmount(request.getAmount());
         payment.setStatus(PaymentStatus.PENDING);
         payment.setCreatedAt(Instant.now());
-        payment = paymentRepository.save(payment);
+        payment = paymentRepository.insert(payment);
+        
+        boolean razorpay = "razorpay".equalsIgnoreCase(paymentProvider);
+        Map<String, Object> providerResponse;
+        try {
+            providerResponse = razorpay
+                    ? razorpayService.createRazorpayOrder(request)
+                    : paymentServiceClient.createPayment(request);
+        } catch (RuntimeException e) {
+            paymentRepository.delete(payment);
+            throw e;
+        }
+        
+        String externalId = providerResponse == null ? null
+                : (String) providerResponse.get(razorpay ? "razorpayOrderId" : "paymentId");
+        if (externalId != null) {
+            payment.setPaymentId(externalId);
+        }
+        Payment created = payment;
+        transactionRunner.run(() -> {
+            // A webhook that got in first has recorded the newer status and its own event
+            boolean pending = created.getPaymentId() == null
+                    || paymentRepository.setPaymentIdIfPending(created.getId(), created.getPaymentId());
+            if (pending) {
+                outboxService.record(OutboxEvent.paymentStatusChanged(created));
+            }
+        });
         
         // Build response based on payment provider
         Map<String, Object> response = new HashMap<>();
-        
-        if ("razorpay".equalsIgnoreCase(paymentProvider)) {
-            // Create Razorpay order
-            Map<String, Object> razorpayResponse = razorpayService.createRazorpayOrder(request);
-            payment.setPaymentId((String) razorpayResponse.get("razorpayOrderId"));
-            payment = paymentRepository.save(payment);
-            
+        if (razorpay) {
             response.put("paymentId", payment.getId());
-            response.put("razorpayOrderId", razorpayResponse.get("razorpayOrderId"));
+            response.put("razorpayOrderId", providerResponse.get("razorpayOrderId"));
             response.put("orderId", payment.getOrderId());
             response.put("amount", payment.getAmount());
             response.put("status", payment.getStatus().toString());
-            response.put("keyId", razorpayResponse.get("keyId"));
-            response.put("currency", razorpayResponse.get("currency"));
+            response.put("keyId", providerResponse.get("keyId"));
+            response.put("currency", providerResponse.get("currency"));
         } else {
-            // Call mock payment service
-            Map<String, Object> paymentResponse = paymentServiceClient.createPayment(request);
-            
-            // Update payment with external payment ID
-            if (paymentResponse != null && paymentResponse.containsKey("paymentId")) {
-                payment.setPaymentId((String) paymentResponse.get("paymentId"));
-                payment = paymentRepository.save(payment);
-            }
-            
             response.put("paymentId", payment.getPaymentId() != null ? payment.getPaymentId() : payment.getId());
             response.put("orderId", payment.getOrderId());
             response.put("amount", payment.getAmount());
             response.put("status", payment.getStatus().toString());
         }
-        
         return response;
     }
     
-    @Transactional
     public void handlePaymentWebhook(String orderId, String paymentId, String status) {
-        // Update payment status
-        Payment payment = paymentRepository.findByOrderId(orderId)
-                .orElseThrow(() -> new RuntimeException("Payment not found for order: " + orderId));
+        transactionRunner.run(() -> applyPaymentWebhook(orderId, paymentId, status));
+    }
+    
+    private void applyPaymentWebhook(String orderId, String paymentId, String status) {
+        // Provider retries of an event that was already applied are dropped
+        String idempotencyKey = WebhookIdempotencyService.mockKey(orderId, paymentId, status);
+        if (webhookIdempotencyService.isProcessed(idempotencyKey)
+                || webhookIdempotencyService.claim(List.of(idempotencyKey)).isEmpty()) {
+            return;
+        }
+        
+        try {
+            // Update payment status
+            Payment payment = paymentRepository.findByOrderId(orderId)
+                    .orElseThrow(() -> new RuntimeException("Payment not found for order: " + orderId));
+            
+            PaymentStatus paymentStatus = PaymentStatus.valueOf(status.toUpperCase());
+            payment.setStatus(paymentStatus);
+            payment.setPaymentId(paymentId);
+            paymentRepository.save(payment);
+            outboxService.record(OutboxEvent.paymentStatusChanged(payment));
+            
+            // Update order status
+            if (paymentStatus == PaymentStatus.SUCCESS) {
+                orderService.updateOrderStatus(orderId, OrderStatus.PAID);
+            } else if (paymentStatus == PaymentStatus.FAILED) {
+                orderService.updateOrderStatus(orderId, OrderStatus.FAILED);
+            }
+        } catch (RuntimeException e) {
+            webhookIdempotencyService.releaseOnFailure(List.of(idempotencyKey));
+            throw e;
+        }
+    }
+    
+    // Applies many webhook events with one payment lookup and one bulk write each for payments and orders.
+    // Events are applied in order, so a later event for the same order wins. Events already applied are skipped.
+    public PaymentWebhookBatchResult handlePaymentWebhookBatch(List<PaymentWebhookRequest> events) {
+        return transactionRunner.execute(() -> applyPaymentWebhookBatch(events));
+    }
+    
+    private PaymentWebhookBatchResult applyPaymentWebhookBatch(List<PaymentWebhookRequest> events) {
+        Map<PaymentWebhookRequest, String> idempotencyKeys = new HashMap<>();
+        for (PaymentWebhookRequest event : events) {
+            if (event.getStatus() != null) {
+                idempotencyKeys.put(event, WebhookIdempotencyService.mockKey(
+                        event.getOrderId(), event.getPaymentId(), event.getStatus()));
+            }
+        }
+        Set<String> unprocessedKeys = webhookIdempotencyService.findUnprocessed(idempotencyKeys.values());
+        
+        Map<String, Payment> paymentsByOrderId = paymentRepository.findByOrderIdIn(
+                        events.stream().map(PaymentWebhookRequest::getOrderId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Payment::getOrderId, Function.identity()));
         
-        PaymentStatus paymentStatus = PaymentStatus.valueOf(status.toUpperCase());
-        payment.setStatus(paymentStatus);
-        payment.setPaymentId(paymentId);
-        paymentRepository.save(payment);
+        // Checked first, so only the keys of events that will be applied are claimed
+        List<PaymentWebhookRequest> accepted = new ArrayList<>();
+        List<PaymentStatus> acceptedStatuses = new ArrayList<>();
+        Set<String> acceptedKeys = new LinkedHashSet<>();
+        List<PaymentWebhookBatchResult.EventError> errors = new ArrayList<>();
+        int duplicates = 0;
+        for (PaymentWebhookRequest event : events) {
+            String idempotencyKey = idempotencyKeys.get(event);
+            if (idempotencyKey != null && (!unprocessedKeys.contains(idempotencyKey) || acceptedKeys.contains(idempotencyKey))) {
+                duplicates++;
+                continue;
+            }
+            
+            if (!paymentsByOrderId.containsKey(event.getOrderId())) {
+                errors.add(batchError(event, "Payment not found for order: " + event.getOrderId()));
+                continue;
+            }
+            
+            try {
+                acceptedStatuses.add(PaymentStatus.valueOf(event.getStatus().toUpperCase()));
+            } catch (RuntimeException e) {
+                errors.add(batchError(event, "Invalid payment status: " + event.getStatus()));
+                continue;
+            }
+            accepted.add(event);
+            acceptedKeys.add(idempotencyKey);
+        }
         
-        // Update order status
-        if (paymentStatus == PaymentStatus.SUCCESS) {
-            orderService.updateOrderStatus(orderId, OrderStatus.PAID);
-        } else if (paymentStatus == PaymentStatus.FAILED) {
-            orderService.updateOrderStatus(orderId, OrderStatus.FAILED);
+        // Events whose key a concurrent delivery claimed first are left to that delivery
+        Set<String> claimedKeys = webhookIdempotencyService.claim(acceptedKeys);
+        List<Payment> updatedPayments = new ArrayList<>();
+        List<OutboxEvent> outboxEvents = new ArrayList<>();
+        Map<String, OrderStatus> orderStatuses = new LinkedHashMap<>();
+        for (int i = 0; i < accepted.size(); i++) {
+            PaymentWebhookRequest event = accepted.get(i);
+            if (!claimedKeys.contains(idempotencyKeys.get(event))) {
+                duplicates++;
+                continue;
+            }
+            PaymentStatus paymentStatus = acceptedStatuses.get(i);
+            Payment payment = paymentsByOrderId.get(event.getOrderId());
+            payment.setStatus(paymentStatus);
+            payment.setPaymentId(event.getPaymentId());
+            updatedPayments.add(payment);
+            outboxEvents.add(OutboxEvent.paymentStatusChanged(payment));
+            
+            if (paymentStatus == PaymentStatus.SUCCESS) {
+                orderStatuses.put(event.getOrderId(), OrderStatus.PAID);
+            } else if (paymentStatus == PaymentStatus.FAILED) {
+                orderStatuses.put(event.getOrderId(), OrderStatus.FAILED);
+            }
+        }
+        
+        try {
+            paymentRepository.bulkUpdateStatus(updatedPayments);
+            outboxService.recordAll(outboxEvents);
+            orderService.updateOrderStatuses(orderStatuses);
+        } catch (RuntimeException e) {
+            webhookIdempotencyService.releaseOnFailure(claimedKeys);
+            throw e;
         }
+        
+        return new PaymentWebhookBatchResult(updatedPayments.size(), duplicates, errors);
+    }
+    
+    private static PaymentWebhookBatchResult.EventError batchError(PaymentWebhookRequest event, String message) {
+        return new PaymentWebhookBatchResult.EventError(event.getOrderId(), event.getPaymentId(), message);
     }
     
     public Payment getPaymentByOrderId(String orderId) {
         return paymentRepository.findByOrderId(orderId).orElse(null);
     }
     
-    @Transactional
+    // Order details plus a "payment" map (empty until a payment exists), as GET /api/orders/{orderId} returns them
+    public Map<String, Object> getOrderWithPayment(String orderId) {
+        Map<String, Object> orderDetails = orderService.getOrderDetails(orderId);
+        orderDetails.put("payment", paymentInfo(getPaymentByOrderId(orderId)));
+        return orderDetails;
+    }
+    
+    public static Map<String, Object> paymentInfo(Payment payment) {
+        Map<String, Object> paymentInfo = new HashMap<>();
+        if (payment != null) {
+            paymentInfo.put("id", payment.getId());
+            paymentInfo.put("status", payment.getStatus().toString());
+            paymentInfo.put("amount", payment.getAmount());
+        }
+        return paymentInfo;
+    }
+    
     public void handleRazorpayWebhook(String razorpayOrderId, String razorpayPaymentId, String status) {
-        // Find payment by razorpay order ID (stored as paymentId field)
-        Payment payment = paymentRepository.findByPaymentId(razorpayOrderId)
-                .orElseThrow(() -> new RuntimeException("Payment not found for Razorpay order: " + razorpayOrderId));
-        
-        PaymentStatus paymentStatus = PaymentStatus.valueOf(status);
-        payment.setStatus(paymentStatus);
-        // Store both Razorpay order ID and payment ID (payment ID is the actual payment transaction ID)
-        // Format: "order_xyz|pay_abc" or just use payment ID if we only need one
-        payment.setPaymentId(razorpayPaymentId != null ? razorpayPaymentId : razorpayOrderId);
-        paymentRepository.save(payment);
+        transactionRunner.run(() -> applyRazorpayWebhook(razorpayOrderId, razorpayPaymentId, status));
+    }
+    
+    private void applyRazorpayWebhook(String razorpayOrderId, String razorpayPaymentId, String status) {
+        String idempotencyKey = WebhookIdempotencyService.razorpayKey(razorpayOrderId, razorpayPaymentId, status);
+        if (webhookIdempotencyService.isProcessed(idempotencyKey)
+                || webhookIdempotencyService.claim(List.of(idempotencyKey)).isEmpty()) {
+            return;
+        }
         
-        // Update order status
-        if (paymentStatus == PaymentStatus.SUCCESS) {
-            orderService.updateOrderStatus(payment.getOrderId(), OrderStatus.PAID);
-        } else if (paymentStatus == PaymentStatus.FAILED) {
-            orderService.updateOrderStatus(payment.getOrderId(), OrderStatus.FAILED);
+        try {
+            // Find payment by razorpay order ID (stored as paymentId field)
+            Payment payment = paymentRepository.findByPaymentId(razorpayOrderId)
+                    .orElseThrow(() -> new RuntimeException("Payment not found for Razorpay order: " + razorpayOrderId));
+            
+            PaymentStatus paymentStatus = PaymentStatus.valueOf(status);
+            payment.setStatus(paymentStatus);
+            // Store both Razorpay order ID and payment ID (payment ID is the actual payment transaction ID)
+            // Format: "order_xyz|pay_abc" or just use payment ID if we only need one
+            payment.setPaymentId(razorpayPaymentId != null ? razorpayPaymentId : razorpayOrderId);
+            paymentRepository.save(payment);
+            outboxService.record(OutboxEvent.paymentStatusChanged(payment));
+            
+            // Update order status
+            if (paymentStatus == PaymentStatus.SUCCESS) {
+                orderService.updateOrderStatus(payment.getOrderId(), OrderStatus.PAID);
+            } else if (paymentStatus == PaymentStatus.FAILED) {
+                orderService.updateOrderStatus(payment.getOrderId(), OrderStatus.FAILED);
+            }
+        } catch (RuntimeException e) {
+            webhookIdempotencyService.releaseOnFailure(List.of(idempotencyKey));
+            throw e;
         }
     }
 }
@@ -0,0 +1,68 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductSummary;
+import com.example.ecommerce.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Read-through cache of product metadata (name, description, price). Stock is deliberately not
+// cached. Entries are dropped when this node writes a product, and by ProductChangeListener when
+// another node does.
+@Component
+public class ProductCache {
+    
+    private final ProductRepository productRepository;
+    private final Cache<String, ProductSummary> cache;
+    
+    public ProductCache(ProductRepository productRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${product.cache.max-size:10000}") long maxSize,
+                        @Value("${product.cache.ttl:10m}") Duration ttl) {
+        this.productRepository = productRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size ... tagged cache=products
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+    
+    public Optional<ProductSummary> get(String productId) {
+        return Optional.ofNullable(getAll(List.of(productId)).get(productId));
+    }
+    
+    // Misses are loaded together with one $in query; unknown ids are absent from the result
+    public Map<String, ProductSummary> getAll(Collection<String> productIds) {
+        return cache.getAll(productIds, missing -> {
+            Map<String, ProductSummary> loaded = new HashMap<>();
+            productRepository.findSummariesByIdIn(Set.copyOf(missing))
+                    .forEach(summary -> loaded.put(summary.getId(), summary));
+            return loaded;
+        });
+    }
+    
+    public void invalidate(String productId) {
+        cache.invalidate(productId);
+    }
+    
+    public void invalidateAll(Collection<String> productIds) {
+        cache.invalidateAll(productIds);
+    }
+    
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductImportRow;
+import com.example.ecommerce.model.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Bulk product import from NDJSON or CSV. Rows are parsed and validated as they are read and upserted
+// one batch at a time, so memory stays flat however large the upload is: only the current batch and
+// at most product.import.max-errors error entries are held.
+@Service
+public class ProductImportService {
+    
+    public static final String TEXT_CSV = "text/csv";
+    private static final Set<String> REQUIRED_CSV_COLUMNS = new LinkedHashSet<>(List.of("id", "name", "price", "stock"));
+    
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader rowReader;
+    private final CsvMapper csvMapper = new CsvMapper();
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxErrors;
+    
+    public ProductImportService(ProductService productService,
+                                ObjectMapper objectMapper,
+                                Validator validator,
+                                @Value("${product.import.batch-size:1000}") int batchSize,
+                                @Value("${product.import.max-errors:1000}") int maxErrors) {
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.rowReader = objectMapper.readerFor(ProductImportRow.class);
+        this.validator = validator;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxErrors = maxErrors;
+    }
+    
+    public Map<String, Object> importProducts(InputStream body, String contentType) {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        Charset charset = mediaType.getCharset() != null ? mediaType.getCharset() : StandardCharsets.UTF_8;
+        Import run = new Import();
+        try (Reader reader = new BufferedReader(new InputStreamReader(body, charset))) {
+            if (mediaType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV))) {
+                readCsv(reader, run);
+            } else {
+                readNdjson((BufferedReader) reader, run);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        run.flush();
+        return run.report();
+    }
+    
+    // Row numbers are line numbers; blank lines are skipped
+    private void readNdjson(BufferedReader reader, Import run) throws IOException {
+        long row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            if (line.isBlank()) {
+                continue;
+            }
+            run.rows++;
+            try {
+                ProductImportRow importRow = rowReader.readValue(line);
+                if (importRow == null) {
+                    run.reject(row, null, "Row is not a JSON object");
+                    continue;
+                }
+                run.accept(row, importRow);
+            } catch (JsonProcessingException e) {
+                run.reject(row, null, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+    
+    // The first line is the header; row numbers count it, so they match line numbers unless a quoted value spans lines.
+    // A syntax error leaves the parser in an unknown position, so the import stops there.
+    private void readCsv(Reader reader, Import run) throws IOException {
+        CsvSchema schema = CsvSchema.emptySchema().withHeader();
+        try (MappingIterator<Map<String, String>> rows = csvMapper.readerForMapOf(String.class).with(schema).readValues(reader)) {
+            long row = 1;
+            boolean headerChecked = false;
+            while (true) {
+                Map<String, String> values;
+                try {
+                    if (!rows.hasNextValue()) {
+                        return;
+                    }
+                    values = rows.nextValue();
+                } catch (IOException e) {
+                    run.abort(row + 1, "Malformed CSV: " + (e instanceof JsonProcessingException parseError
+                            ? parseError.getOriginalMessage() : e.getMessage()));
+                    return;
+                }
+                row++;
+                run.rows++;
+                if (!headerChecked) {
+                    checkHeader(((CsvParser) rows.getParser()).getSchema());
+                    headerChecked = true;
+                }
+                // Empty cells are missing values, not empty strings
+                values.values().removeIf(value -> value == null || value.isBlank());
+                try {
+                    run.accept(row, objectMapper.convertValue(values, ProductImportRow.class));
+                } catch (IllegalArgumentException e) {
+                    run.reject(row, values.get("id"), "Invalid value: " + (e.getCause() instanceof JsonProcessingException cause
+                            ? cause.getOriginalMessage() : e.getMessage()));
+                }
+            }
+        }
+    }
+    
+    private void checkHeader(CsvSchema header) {
+        Set<String> missing = new LinkedHashSet<>(REQUIRED_CSV_COLUMNS);
+        header.forEach(column -> missing.remove(column.getName()));
+        if (!missing.isEmpty()) {
+            throw new RuntimeException("CSV header is missing columns: " + String.join(", ", missing));
+        }
+    }
+    
+    // State of one import: the pending batch and the report so far
+    private class Import {
+        private final List<Product> batch = new ArrayList<>();
+        private final List<Long> batchRows = new ArrayList<>();
+        private final Set<String> batchIds = new HashSet<>();
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private long rows;
+        private long imported;
+        private long failed;
+        private boolean completed = true;
+        
+        private void accept(long row, ProductImportRow importRow) {
+            Set<ConstraintViolation<ProductImportRow>> violations = validator.validate(importRow);
+            if (!violations.isEmpty()) {
+                reject(row, importRow.getId(), violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                return;
+            }
+            // Two upserts of one id in an unordered batch have no defined order; the later row must win
+            if (batchIds.contains(importRow.getId())) {
+                flush();
+            }
+            Product product = new Product();
+            product.setId(importRow.getId());
+            product.setName(importRow.getName());
+            product.setDescription(importRow.getDescription());
+            product.setPrice(importRow.getPrice());
+            product.setStock(importRow.getStock());
+            batch.add(product);
+            batchRows.add(row);
+            batchIds.add(product.getId());
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+        
+        private void reject(long row, String id, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("row", row);
+                error.put("id", id);
+                error.put("message", message);
+                errors.add(error);
+            }
+        }
+        
+        private void abort(long row, String message) {
+            reject(row, null, message);
+            completed = false;
+        }
+        
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<Integer, String> batchErrors = productService.upsertProducts(batch);
+            imported += batch.size() - batchErrors.size();
+            batchErrors.forEach((index, message) -> reject(batchRows.get(index), batch.get(index).getId(), message));
+            batch.clear();
+            batchRows.clear();
+            batchIds.clear();
+        }
+        
+        private Map<String, Object> report() {
+            Map<String, Object> report = new HashMap<>();
+            report.put("rows", rows);
+            report.put("imported", imported);
+            report.put("failed", failed);
+            report.put("errors", errors);
+            report.put("errorsTruncated", failed > errors.size());
+            report.put("completed", completed);
+            return report;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductSummary;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// In-memory substring index over product names and descriptions, holding everything a search result shows
+// (id, name, description, price) so searches never read MongoDB. Stock is not held; it changes on every order.
+// Every trigram of the lowercased text points at the products containing it, so "phone" is only checked against
+// products that have "pho", "hon" and "one". One- and two-character terms are answered from postings of every
+// 1- and 2-gram, kept in ranking order so a search reads no more than the results it returns.
+// Reads are lock-free.
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+    
+    private static final int GRAM_LENGTH = 3;
+    
+    // Name matches first, then shorter names; the order of the short-term postings
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt((Entry entry) -> entry.lowerName().length())
+            .thenComparing(Entry::lowerName)
+            .thenComparing(Entry::id);
+    
+    private final ProductRepository productRepository;
+    
+    private volatile Index current = new Index();
+    private volatile boolean ready;
+    
+    // Writes made while a rebuild reads the catalog, replayed onto the new index before it is swapped in
+    private List<Consumer<Index>> pendingUpdates; // Guarded by this
+    private final Object rebuildLock = new Object();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+        ready = true;
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    // Reads the catalog into a fresh index and swaps it in; searches keep using the old one meanwhile.
+    // Rebuilds run one at a time.
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                pendingUpdates = new ArrayList<>();
+            }
+            Index rebuilt = new Index();
+            try (Stream<Product> stream = productRepository.streamAllBy()) {
+                stream.forEach(rebuilt::add);
+                synchronized (this) {
+                    pendingUpdates.forEach(update -> update.accept(rebuilt));
+                    current = rebuilt;
+                }
+            } finally {
+                synchronized (this) {
+                    pendingUpdates = null;
+                }
+            }
+        }
+    }
+    
+    public synchronized void index(Product product) {
+        apply(index -> index.add(product));
+    }
+    
+    public synchronized void remove(String productId) {
+        apply(index -> index.remove(productId));
+    }
+    
+    private void apply(Consumer<Index> update) {
+        update.accept(current);
+        if (pendingUpdates != null) {
+            pendingUpdates.add(update);
+        }
+    }
+    
+    // Products whose name or description contains the query, best matches first
+    public List<ProductSummary> search(String query, int limit) {
+        String term = normalize(query);
+        if (term.isEmpty()) {
+            return List.of();
+        }
+        
+        Index index = current;
+        if (term.length() < GRAM_LENGTH) {
+            // Exact postings for the term, already ranked: name matches, then description-only matches
+            List<ProductSummary> results = new ArrayList<>();
+            take(index.namePostings.get(term), limit, results);
+            take(index.descriptionPostings.get(term), limit, results);
+            return results;
+        }
+        
+        // The rarest trigram gives the fewest candidates; the substring check below covers the others
+        Set<String> rarest = null;
+        for (String gram : grams(term, GRAM_LENGTH)) {
+            Set<String> posting = index.postings.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            if (rarest == null || posting.size() < rarest.size()) {
+                rarest = posting;
+            }
+        }
+        return rarest.stream()
+                .map(index.entries::get)
+                .filter(Objects::nonNull)
+                .filter(entry -> matches(entry.lowerName(), entry.lowerDescription(), term))
+                .sorted(ranking(term, Entry::lowerName))
+                .limit(limit)
+                .map(Entry::summary)
+                .toList();
+    }
+    
+    private static void take(NavigableSet<Entry> posting, int limit, List<ProductSummary> results) {
+        if (posting == null) {
+            return;
+        }
+        for (Entry entry : posting) {
+            if (results.size() >= limit) {
+                return;
+            }
+            results.add(entry.summary());
+        }
+    }
+    
+    public static String normalize(String query) {
+        return query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    // The one definition of a match, shared with the scan that answers searches while the index is built
+    public static boolean matches(String name, String description, String term) {
+        return lowerCase(name).contains(term) || lowerCase(description).contains(term);
+    }
+    
+    // Name matches first, then shorter names
+    public static <T> Comparator<T> ranking(String term, Function<T, String> name) {
+        return Comparator.<T, Boolean>comparing(item -> !lowerCase(name.apply(item)).contains(term))
+                .thenComparing(item -> lowerCase(name.apply(item)).length())
+                .thenComparing(item -> lowerCase(name.apply(item)));
+    }
+    
+    private static String lowerCase(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+    
+    private static Set<String> grams(String text, int length) {
+        Set<String> grams = new HashSet<>();
+        for (int start = 0; start + length <= text.length(); start++) {
+            grams.add(text.substring(start, start + length));
+        }
+        return grams;
+    }
+    
+    private static Set<String> shortGrams(String text) {
+        Set<String> grams = grams(text, 1);
+        grams.addAll(grams(text, 2));
+        return grams;
+    }
+    
+    private static class Index {
+        // trigram -> IDs of the products whose name or description contains it
+        private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+        // 1- or 2-gram -> products whose name contains it, ranked
+        private final Map<String, NavigableSet<Entry>> namePostings = new ConcurrentHashMap<>();
+        // 1- or 2-gram -> products whose description but not name contains it, ranked
+        private final Map<String, NavigableSet<Entry>> descriptionPostings = new ConcurrentHashMap<>();
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        
+        private void add(Product product) {
+            remove(product.getId());
+            Entry entry = new Entry(ProductSummary.of(product), lowerCase(product.getName()), lowerCase(product.getDescription()));
+            entries.put(entry.id(), entry);
+            for (String gram : entry.grams()) {
+                postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(entry.id());
+            }
+            Set<String> nameGrams = shortGrams(entry.lowerName());
+            for (String gram : nameGrams) {
+                namePostings.computeIfAbsent(gram, key -> new ConcurrentSkipListSet<>(RANKING)).add(entry);
+            }
+            for (String gram : shortGrams(entry.lowerDescription())) {
+                if (!nameGrams.contains(gram)) {
+                    descriptionPostings.computeIfAbsent(gram, key -> new ConcurrentSkipListSet<>(RANKING)).add(entry);
+                }
+            }
+        }
+        
+        private void remove(String productId) {
+            Entry entry = entries.remove(productId);
+            if (entry == null) {
+                return;
+            }
+            for (String gram : entry.grams()) {
+                Set<String> posting = postings.get(gram);
+                if (posting != null) {
+                    posting.remove(productId);
+                    if (posting.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+            Set<String> nameGrams = shortGrams(entry.lowerName());
+            for (String gram : nameGrams) {
+                removeRanked(namePostings, gram, entry);
+            }
+            for (String gram : shortGrams(entry.lowerDescription())) {
+                if (!nameGrams.contains(gram)) {
+                    removeRanked(descriptionPostings, gram, entry);
+                }
+            }
+        }
+        
+        private static void removeRanked(Map<String, NavigableSet<Entry>> rankedPostings, String gram, Entry entry) {
+            NavigableSet<Entry> posting = rankedPostings.get(gram);
+            if (posting != null) {
+                posting.remove(entry);
+                if (posting.isEmpty()) {
+                    rankedPostings.remove(gram);
+                }
+            }
+        }
+    }
+    
+    private record Entry(ProductSummary summary, String lowerName, String lowerDescription) {
+        
+        private String id() {
+            return summary.getId();
+        }
+        
+        private Set<String> grams() {
+            Set<String> grams = ProductSearchIndex.grams(lowerName, GRAM_LENGTH);
+            grams.addAll(ProductSearchIndex.grams(lowerDescription, GRAM_LENGTH));
+            return grams;
+        }
+    }
+}
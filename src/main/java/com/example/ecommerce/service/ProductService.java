@@ -1,20 +1,42 @@
 package com.example.ecommerce.service;
 
 import com.example.ecommerce.dto.ProductRequest;
+import com.example.ecommerce.dto.ProductSummary;
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
     
     private final ProductRepository productRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductCache productCache;
+    private final InventoryShardService inventoryShardService;
+    
+    @Value("${product.page.max-size:200}")
+    private int maxPageSize;
+    
+    @Value("${product.search.max-results:100}")
+    private int maxSearchResults;
     
     public Product createProduct(ProductRequest request) {
         Product product = new Product();
@@ -23,42 +45,221 @@ public class ProductService {
         product.setDescription(request.getDescription());
         product.setPrice(request.getPrice());
         product.setStock(request.getStock());
-        return productRepository.save(product);
+        return saveAndIndex(product);
     }
     
     public Product createProduct(Product product) {
         if (product.getId() == null) {
             product.setId(UUID.randomUUID().toString());
         }
-        return productRepository.save(product);
+        return saveAndIndex(product);
+    }
+    
+    // Unordered bulk upsert by id; returns the error message for each failed position in the list
+    public Map<Integer, String> upsertProducts(List<Product> products) {
+        Map<Integer, String> errors = productRepository.upsertProducts(products);
+        List<String> upsertedIds = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            if (!errors.containsKey(i)) {
+                upsertedIds.add(products.get(i).getId());
+            }
+        }
+        if (!upsertedIds.isEmpty()) {
+            afterCommit(() -> {
+                for (int i = 0; i < products.size(); i++) {
+                    if (!errors.containsKey(i)) {
+                        productSearchIndex.index(products.get(i));
+                    }
+                }
+                productCache.invalidateAll(upsertedIds);
+            });
+        }
+        return errors;
     }
     
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    public Map<String, Object> getProductsPage(String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        // Fetch one extra row to learn whether another page exists
+        Pageable pageable = PageRequest.of(0, pageSize + 1, Sort.by("id"));
+        List<Product> products = cursor == null || cursor.isBlank()
+                ? productRepository.findAllBy(pageable)
+                : productRepository.findByIdGreaterThan(cursor, pageable);
+        
+        boolean hasMore = products.size() > pageSize;
+        List<Product> items = hasMore ? products.subList(0, pageSize) : products;
+        
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", hasMore ? items.get(items.size() - 1).getId() : null);
+        return page;
     }
     
-    public List<Product> searchProducts(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return productRepository.findAll();
+    public void forEachProduct(Consumer<Product> action) {
+        try (Stream<Product> products = productRepository.streamAllBy()) {
+            products.forEach(action);
+        }
+    }
+    
+    // Case-insensitive substring match on name or description, at most product.search.max-results products.
+    // Results carry no stock: they come from the in-memory index, which does not follow stock changes.
+    public List<ProductSummary> searchProducts(String query) {
+        String term = ProductSearchIndex.normalize(query);
+        if (term.isEmpty()) {
+            return productRepository.findAllBy(PageRequest.of(0, maxSearchResults, Sort.by("id"))).stream()
+                    .map(ProductSummary::of)
+                    .toList();
+        }
+        if (productSearchIndex.isReady()) {
+            return productSearchIndex.search(term, maxSearchResults);
+        }
+        // Index is still being built at startup: same matching and ranking, straight off the collection
+        try (Stream<Product> products = productRepository.streamAllBy()) {
+            return products
+                    .filter(product -> ProductSearchIndex.matches(product.getName(), product.getDescription(), term))
+                    .sorted(ProductSearchIndex.ranking(term, Product::getName))
+                    .limit(maxSearchResults)
+                    .map(ProductSummary::of)
+                    .toList();
         }
-        String searchQuery = query.toLowerCase().trim();
-        return productRepository.findAll().stream()
-                .filter(product -> 
-                    product.getName().toLowerCase().contains(searchQuery) ||
-                    (product.getDescription() != null && 
-                     product.getDescription().toLowerCase().contains(searchQuery))
-                )
-                .toList();
     }
     
     public Optional<Product> getProductById(String id) {
         return productRepository.findById(id);
     }
     
+    // Cached name, description and price; use getProductById/getProductsByIds when stock matters
+    public Map<String, ProductSummary> getProductSummaries(Collection<String> ids) {
+        return productCache.getAll(ids);
+    }
+    
+    // Name, description and price read from MongoDB, bypassing the cache; what an order is charged
+    public Map<String, ProductSummary> getCurrentProductSummaries(Collection<String> ids) {
+        Map<String, ProductSummary> products = new HashMap<>();
+        for (ProductSummary product : productRepository.findSummariesByIdIn(ids)) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+    
+    // One $in query for all ids; missing products are simply absent from the map
+    public Map<String, Product> getProductsByIds(Collection<String> ids) {
+        Map<String, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(ids)) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+    
     public Product updateProductStock(String productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
+        if (!inventoryShardService.isSharded(productId)) {
+            Optional<Product> updated = productRepository.decrementStock(productId, quantity);
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
+            if (inventoryShardService.discover(List.of(product)).isEmpty()) {
+                throw new RuntimeException("Insufficient stock for product: " + productId);
+            }
+        }
+        if (!inventoryShardService.decrement(productId, quantity)) {
+            throw new RuntimeException("Insufficient stock for product: " + productId);
+        }
+        return getShardedProduct(productId);
+    }
+    
+    public Product restoreProductStock(String productId, Integer quantity) {
+        if (!inventoryShardService.isSharded(productId)) {
+            Optional<Product> updated = productRepository.incrementStock(productId, quantity);
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
+            inventoryShardService.discover(List.of(product));
+        }
+        inventoryShardService.increment(productId, quantity);
+        return getShardedProduct(productId);
+    }
+    
+    // All-or-nothing inside a transaction: any line short on stock fails the whole batch
+    public void updateProductStocks(Map<String, Integer> quantitiesByProductId) {
+        Map<String, Integer> sharded = new HashMap<>();
+        Map<String, Integer> unsharded = splitSharded(quantitiesByProductId, sharded);
+        
+        long matched = productRepository.decrementStocks(unsharded);
+        if (matched != unsharded.size()) {
+            // Products sharded by another node refuse the direct decrement; anything else was short on stock
+            List<String> discovered = inventoryShardService.discover(productRepository.findAllById(unsharded.keySet()));
+            if (matched + discovered.size() != unsharded.size()) {
+                throw new RuntimeException("Insufficient stock for one or more products");
+            }
+            discovered.forEach(productId -> sharded.put(productId, unsharded.get(productId)));
+        }
+        sharded.forEach((productId, quantity) -> {
+            if (!inventoryShardService.decrement(productId, quantity)) {
+                throw new RuntimeException("Insufficient stock for one or more products");
+            }
+        });
+    }
+    
+    public void restoreProductStocks(Map<String, Integer> quantitiesByProductId) {
+        Map<String, Integer> sharded = new HashMap<>();
+        Map<String, Integer> unsharded = splitSharded(quantitiesByProductId, sharded);
+        
+        long matched = productRepository.incrementStocks(unsharded);
+        if (matched != unsharded.size()) {
+            inventoryShardService.discover(productRepository.findAllById(unsharded.keySet()))
+                    .forEach(productId -> sharded.put(productId, unsharded.get(productId)));
+        }
+        sharded.forEach(inventoryShardService::increment);
+    }
+    
+    public Product enableInventorySharding(String productId, int shards) {
+        return inventoryShardService.enableSharding(productId, shards);
+    }
+    
+    // Moves the lines of sharded products into sharded and returns the rest
+    private Map<String, Integer> splitSharded(Map<String, Integer> quantitiesByProductId, Map<String, Integer> sharded) {
+        Map<String, Integer> unsharded = new HashMap<>();
+        quantitiesByProductId.forEach((productId, quantity) ->
+                (inventoryShardService.isSharded(productId) ? sharded : unsharded).put(productId, quantity));
+        return unsharded;
+    }
+    
+    // Product.stock of a sharded product catches up with its shards on the next aggregation
+    private Product getShardedProduct(String productId) {
+        return productRepository.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
-        product.setStock(product.getStock() - quantity);
-        return productRepository.save(product);
+    }
+    
+    private Product saveAndIndex(Product product) {
+        Product saved = productRepository.save(product);
+        indexAfterCommit(saved);
+        invalidateAfterCommit(saved.getId());
+        return saved;
+    }
+    
+    private void indexAfterCommit(Product product) {
+        afterCommit(() -> productSearchIndex.index(product));
+    }
+    
+    // Stock is not cached, so only writes that can change metadata invalidate the cache
+    private void invalidateAfterCommit(String productId) {
+        afterCommit(() -> productCache.invalidate(productId));
+    }
+    
+    // Keeps in-memory views from seeing writes that a surrounding transaction later rolls back
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
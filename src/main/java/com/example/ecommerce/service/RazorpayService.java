@@ -1,62 +1,90 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.client.RazorpayApiClient;
 import com.example.ecommerce.dto.PaymentRequest;
-import com.razorpay.Order;
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
 import lombok.RequiredArgsConstructor;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
 import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class RazorpayService {
     
+    private static final String WEBHOOK_HMAC_ALGORITHM = "HmacSHA256";
+    
+    private final RazorpayApiClient razorpayApiClient;
+    
     @Value("${payment.razorpay.key_id}")
     private String keyId;
     
-    @Value("${payment.razorpay.key_secret}")
-    private String keySecret;
-    
     @Value("${payment.razorpay.webhook.secret}")
     private String webhookSecret;
     
+    private volatile Mac webhookMacPrototype;
+    
     public Map<String, Object> createRazorpayOrder(PaymentRequest request) {
+        Map<String, Object> orderRequest = new HashMap<>();
+        // Amount in paise (smallest currency unit)
+        orderRequest.put("amount", (int)(request.getAmount() * 100));
+        orderRequest.put("currency", "INR");
+        orderRequest.put("receipt", "order_receipt_" + request.getOrderId());
+        orderRequest.put("notes", Map.of("orderId", request.getOrderId()));
+        
+        Map<String, Object> order;
         try {
-            RazorpayClient razorpay = new RazorpayClient(keyId, keySecret);
-            
-            JSONObject orderRequest = new JSONObject();
-            // Amount in paise (smallest currency unit)
-            orderRequest.put("amount", (int)(request.getAmount() * 100));
-            orderRequest.put("currency", "INR");
-            orderRequest.put("receipt", "order_receipt_" + request.getOrderId());
-            orderRequest.put("notes", new JSONObject().put("orderId", request.getOrderId()));
-            
-            Order order = razorpay.orders.create(orderRequest);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("razorpayOrderId", order.get("id"));
-            response.put("amount", request.getAmount());
-            response.put("currency", "INR");
-            response.put("keyId", keyId);
-            response.put("orderId", request.getOrderId());
-            
-            return response;
-        } catch (RazorpayException e) {
+            order = razorpayApiClient.createOrder(orderRequest);
+        } catch (RestClientException e) {
             throw new RuntimeException("Failed to create Razorpay order: " + e.getMessage(), e);
         }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("razorpayOrderId", order.get("id"));
+        response.put("amount", request.getAmount());
+        response.put("currency", "INR");
+        response.put("keyId", keyId);
+        response.put("orderId", request.getOrderId());
+        
+        return response;
+    }
+    
+    // HMAC-SHA256 over the exact request bytes, compared in constant time
+    public boolean verifyWebhookSignature(byte[] payload, String signature) {
+        byte[] expected = HexFormat.of().formatHex(webhookMac().doFinal(payload)).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    // Mac instances are not thread-safe; cloning the keyed prototype skips the provider lookup and key setup
+    private Mac webhookMac() {
+        Mac prototype = webhookMacPrototype;
+        if (prototype == null) {
+            prototype = newWebhookMac();
+            webhookMacPrototype = prototype;
+        }
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            return newWebhookMac();
+        }
     }
     
-    public boolean verifyWebhookSignature(String payload, String signature) {
+    private Mac newWebhookMac() {
         try {
-            com.razorpay.Utils.verifyWebhookSignature(payload, signature, webhookSecret);
-            return true;
-        } catch (Exception e) {
-            return false;
+            Mac mac = Mac.getInstance(WEBHOOK_HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), WEBHOOK_HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise webhook signature verification", e);
         }
     }
 }
@@ -0,0 +1,67 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.Payment;
+import com.example.ecommerce.repository.ReactiveOrderRepository;
+import com.example.ecommerce.repository.ReactivePaymentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+// Order flows for the reactive profile. Reads go through reactive MongoDB; checkout and cancellation
+// keep their transactional stock handling in OrderService and run on the bounded elastic scheduler.
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveOrderService {
+    
+    private final ReactiveOrderRepository reactiveOrderRepository;
+    private final ReactivePaymentRepository reactivePaymentRepository;
+    private final OrderService orderService;
+    
+    public Mono<Map<String, Object>> createOrder(CreateOrderRequest request) {
+        return blocking(() -> orderService.getOrderDetails(orderService.createOrder(request)));
+    }
+    
+    // The order and its payment are read concurrently
+    public Mono<Map<String, Object>> getOrderWithPayment(String orderId) {
+        Mono<Map<String, Object>> orderDetails = reactiveOrderRepository.findById(orderId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Order not found: " + orderId)))
+                .flatMap(this::getOrderDetails);
+        Mono<Optional<Payment>> payment = reactivePaymentRepository.findByOrderId(orderId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+        
+        return Mono.zip(orderDetails, payment, (details, paymentOptional) -> {
+            details.put("payment", PaymentService.paymentInfo(paymentOptional.orElse(null)));
+            return details;
+        });
+    }
+    
+    public Mono<Map<String, Object>> getOrderHistory(String userId, String cursor, int limit, boolean summary) {
+        return blocking(() -> orderService.getOrderHistory(userId, cursor, limit, summary));
+    }
+    
+    public Mono<Order> cancelOrder(String orderId) {
+        return blocking(() -> orderService.cancelOrder(orderId));
+    }
+    
+    // Orders not yet backfilled still read their items from order_items through the blocking repository
+    private Mono<Map<String, Object>> getOrderDetails(Order order) {
+        if (order.getItems() != null) {
+            return Mono.just(orderService.getOrderDetails(order));
+        }
+        return blocking(() -> orderService.getOrderDetails(order));
+    }
+    
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
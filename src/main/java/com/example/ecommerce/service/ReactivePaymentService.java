@@ -0,0 +1,111 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.client.ReactivePaymentServiceClient;
+import com.example.ecommerce.dto.PaymentRequest;
+import com.example.ecommerce.model.OrderStatus;
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.model.Payment;
+import com.example.ecommerce.model.PaymentStatus;
+import com.example.ecommerce.repository.ReactiveOrderRepository;
+import com.example.ecommerce.repository.ReactivePaymentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Payment creation for the reactive profile. With the mock provider the whole flow is non-blocking;
+// Razorpay orders keep going through PaymentService (circuit breaker, bulkhead) on the bounded elastic scheduler.
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactivePaymentService {
+    
+    private final ReactiveOrderRepository reactiveOrderRepository;
+    private final ReactivePaymentRepository reactivePaymentRepository;
+    private final ReactivePaymentServiceClient reactivePaymentServiceClient;
+    private final PaymentService paymentService;
+    private final OutboxService outboxService;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    
+    @Value("${payment.provider:mock}")
+    private String paymentProvider;
+    
+    public Mono<Map<String, Object>> createPayment(PaymentRequest request) {
+        if ("razorpay".equalsIgnoreCase(paymentProvider)) {
+            return Mono.fromCallable(() -> paymentService.createPayment(request))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        
+        return reactiveOrderRepository.findById(request.getOrderId())
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Order not found: " + request.getOrderId())))
+                .flatMap(order -> {
+                    if (order.getStatus() != OrderStatus.CREATED) {
+                        return Mono.error(new RuntimeException(
+                                "Order is not in CREATED status. Current status: " + order.getStatus()));
+                    }
+                    if (!order.getTotalAmount().equals(request.getAmount())) {
+                        return Mono.error(new RuntimeException("Payment amount does not match order amount"));
+                    }
+                    
+                    Payment payment = new Payment();
+                    payment.setId(UUID.randomUUID().toString());
+                    payment.setOrderId(request.getOrderId());
+                    payment.setAmount(request.getAmount());
+                    payment.setStatus(PaymentStatus.PENDING);
+                    payment.setCreatedAt(Instant.now());
+                    return reactivePaymentRepository.insert(payment);
+                })
+                .flatMap(payment -> requestMockPayment(payment, request))
+                .map(payment -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("paymentId", payment.getPaymentId() != null ? payment.getPaymentId() : payment.getId());
+                    response.put("orderId", payment.getOrderId());
+                    response.put("amount", payment.getAmount());
+                    response.put("status", payment.getStatus().toString());
+                    return response;
+                });
+    }
+    
+    // There is no transaction around the call, so a failed call removes the payment it was made for. The mock
+    // service's webhook finds the payment by order ID and can land before this callback, so both the provider ID
+    // and the removal only apply while the payment is still PENDING, as on the blocking path.
+    private Mono<Payment> requestMockPayment(Payment payment, PaymentRequest request) {
+        return reactivePaymentServiceClient.createPayment(request)
+                .defaultIfEmpty(Map.of())
+                .onErrorResume(error -> reactiveMongoTemplate.remove(pending(payment), Payment.class).then(Mono.error(error)))
+                .flatMap(paymentResponse -> {
+                    String externalId = (String) paymentResponse.get("paymentId");
+                    if (externalId == null) {
+                        return reactiveMongoTemplate.exists(pending(payment), Payment.class);
+                    }
+                    payment.setPaymentId(externalId);
+                    return reactiveMongoTemplate.updateFirst(pending(payment), new Update().set("paymentId", externalId), Payment.class)
+                            .map(result -> result.getMatchedCount() > 0);
+                })
+                // A webhook that got in first has recorded the newer status and its own event
+                .flatMap(stillPending -> stillPending ? recordCreated(payment) : Mono.just(payment));
+    }
+    
+    private static Query pending(Payment payment) {
+        return Query.query(Criteria.where("id").is(payment.getId()).and("status").is(PaymentStatus.PENDING));
+    }
+    
+    // Written once the payment is final, since this flow has no transaction to roll the event back
+    private Mono<Payment> recordCreated(Payment payment) {
+        if (!outboxService.isEnabled()) {
+            return Mono.just(payment);
+        }
+        return reactiveMongoTemplate.insert(OutboxEvent.paymentStatusChanged(payment)).thenReturn(payment);
+    }
+}
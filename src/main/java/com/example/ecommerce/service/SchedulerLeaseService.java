@@ -0,0 +1,30 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.repository.SchedulerLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+// Leases in scheduler_leases, held by this node under a random ID. Expiry is decided by each node's
+// clock, so the lease TTL must be well above both the clock skew between nodes and one batch of work.
+@Service
+@RequiredArgsConstructor
+public class SchedulerLeaseService {
+    
+    private final SchedulerLeaseRepository schedulerLeaseRepository;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    // Also renews a lease this node already holds
+    public boolean tryAcquire(String name, Duration ttl) {
+        Instant now = Instant.now();
+        return schedulerLeaseRepository.tryAcquire(name, nodeId, now, now.plus(ttl));
+    }
+    
+    public void release(String name) {
+        schedulerLeaseRepository.release(name, nodeId);
+    }
+}
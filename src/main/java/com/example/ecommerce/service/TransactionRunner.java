@@ -0,0 +1,89 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.exception.TransactionRetryException;
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Runs work in a MongoDB transaction and runs it again when the server aborts it with a TransientTransactionError,
+// e.g. a WriteConflict between two checkouts that decrement the same product. Retries back off exponentially with
+// full jitter so the conflicting transactions do not collide again in lockstep. A commit whose outcome is unknown
+// is already retried by MongoConfig and is not re-run here, as it may have been applied.
+// Inside an active transaction the work joins it, and the outermost runner does the retrying.
+// Without a transaction manager the work runs as is.
+@Slf4j
+@Component
+public class TransactionRunner {
+    
+    private final PlatformTransactionManager transactionManager;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    
+    public TransactionRunner(ObjectProvider<PlatformTransactionManager> transactionManagerProvider,
+                             @Value("${mongodb.transactions.max-attempts:5}") int maxAttempts,
+                             @Value("${mongodb.transactions.retry-backoff:20ms}") Duration retryBackoff) {
+        this.transactionManager = transactionManagerProvider.getIfAvailable();
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+    }
+    
+    public <T> T execute(Supplier<T> action) {
+        if (transactionManager == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (RuntimeException e) {
+                if (hasErrorLabel(e, MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+                    throw new TransactionRetryException("Could not confirm the transaction commit, please retry", e, true);
+                }
+                if (!hasErrorLabel(e, MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    throw new TransactionRetryException("Too many concurrent updates, please retry", e, false);
+                }
+                log.debug("Transaction aborted on attempt {} ({}), retrying", attempt, e.getMessage());
+                backOff(attempt);
+            }
+        }
+    }
+    
+    public void run(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+    
+    // Spring translates driver errors, so the labelled MongoException is somewhere in the cause chain
+    public static boolean hasErrorLabel(Throwable error, String label) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException && mongoException.hasErrorLabel(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void backOff(int attempt) {
+        long ceiling = retryBackoff.toMillis() << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionRetryException("Interrupted while retrying the transaction", e, false);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.exception.WebhookAlreadyProcessedException;
+import com.example.ecommerce.model.ProcessedWebhook;
+import com.example.ecommerce.repository.ProcessedWebhookRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Remembers which webhooks have been applied so provider retries are dropped before they touch
+// payments or orders. A bounded LRU answers repeats in memory; processed_webhooks is the source of truth.
+@Service
+public class WebhookIdempotencyService {
+    
+    private final ProcessedWebhookRepository processedWebhookRepository;
+    private final Map<String, Boolean> recentKeys;
+    private final Counter cacheHits;
+    private final Counter storeHits;
+    private final Counter misses;
+    
+    public WebhookIdempotencyService(ProcessedWebhookRepository processedWebhookRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${webhooks.dedup.cache-size:100000}") int cacheSize) {
+        this.processedWebhookRepository = processedWebhookRepository;
+        this.recentKeys = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        this.cacheHits = lookupCounter(meterRegistry, "cache_hit");
+        this.storeHits = lookupCounter(meterRegistry, "store_hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+    }
+    
+    public static String mockKey(String orderId, String paymentId, String status) {
+        return "mock:" + (paymentId != null ? paymentId : orderId) + ":" + status.toUpperCase();
+    }
+    
+    public static String razorpayKey(String razorpayOrderId, String paymentId, String status) {
+        return "razorpay:" + (paymentId != null ? paymentId : razorpayOrderId) + ":" + status.toUpperCase();
+    }
+    
+    public boolean isProcessed(String key) {
+        return !findUnprocessed(List.of(key)).contains(key);
+    }
+    
+    // Returns the keys that have not been applied yet, checking the store only for LRU misses
+    public Set<String> findUnprocessed(Collection<String> keys) {
+        Set<String> unknown = new HashSet<>();
+        for (String key : keys) {
+            if (recentKeys.get(key) != null) {
+                cacheHits.increment();
+            } else {
+                unknown.add(key);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return unknown;
+        }
+        
+        for (ProcessedWebhook processed : processedWebhookRepository.findAllById(unknown)) {
+            unknown.remove(processed.getId());
+            recentKeys.put(processed.getId(), Boolean.TRUE);
+            storeHits.increment();
+        }
+        misses.increment(unknown.size());
+        return unknown;
+    }
+    
+    // Records a marker per key before the event is applied. The insert is the dedup guard: of two concurrent
+    // deliveries only one gets the key. Returns the keys claimed here. Inside a transaction a key taken by
+    // another delivery aborts the transaction, so WebhookAlreadyProcessedException is thrown instead;
+    // claimed markers commit or roll back with the updates.
+    public Set<String> claim(Collection<String> keys) {
+        Set<String> claimed = new LinkedHashSet<>(keys);
+        if (claimed.isEmpty()) {
+            return claimed;
+        }
+        Set<String> duplicates = processedWebhookRepository.insertAll(claimed, Instant.now());
+        if (!duplicates.isEmpty() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new WebhookAlreadyProcessedException(duplicates);
+        }
+        duplicates.forEach(key -> recentKeys.put(key, Boolean.TRUE));
+        claimed.removeAll(duplicates);
+        List<String> recorded = new ArrayList<>(claimed);
+        afterCommit(() -> recorded.forEach(key -> recentKeys.put(key, Boolean.TRUE)));
+        return claimed;
+    }
+    
+    // Without a transaction the markers are not rolled back with a failed update, so they are removed here
+    public void releaseOnFailure(Collection<String> keys) {
+        if (!keys.isEmpty() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            processedWebhookRepository.deleteAllById(keys);
+        }
+    }
+    
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("webhooks.dedup.lookups")
+                .description("Webhook idempotency lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.PaymentWebhookRequest;
+import com.example.ecommerce.model.WebhookInboxEvent;
+import com.example.ecommerce.model.WebhookInboxStatus;
+import com.example.ecommerce.repository.WebhookInboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// Durable hand-off between the webhook endpoints and WebhookInboxWorker: a webhook is acknowledged
+// as soon as it is stored here, and applied to payments and orders in the background
+@Service
+@RequiredArgsConstructor
+public class WebhookInboxService {
+    
+    public static final String PROVIDER_MOCK = "mock";
+    public static final String PROVIDER_RAZORPAY = "razorpay";
+    
+    private final WebhookInboxRepository webhookInboxRepository;
+    
+    public WebhookInboxEvent enqueueMock(PaymentWebhookRequest request) {
+        return webhookInboxRepository.insert(mockEvent(request, Instant.now()));
+    }
+    
+    public List<WebhookInboxEvent> enqueueMock(List<PaymentWebhookRequest> requests) {
+        Instant now = Instant.now();
+        return webhookInboxRepository.insert(requests.stream().map(request -> mockEvent(request, now)).toList());
+    }
+    
+    public WebhookInboxEvent enqueueRazorpay(String razorpayOrderId, String paymentId, String status) {
+        return webhookInboxRepository.insert(newEvent(PROVIDER_RAZORPAY, razorpayOrderId, paymentId, status, Instant.now()));
+    }
+    
+    private WebhookInboxEvent mockEvent(PaymentWebhookRequest request, Instant now) {
+        if (request.getOrderId() == null || request.getStatus() == null) {
+            throw new RuntimeException("Invalid webhook request");
+        }
+        return newEvent(PROVIDER_MOCK, request.getOrderId(), request.getPaymentId(), request.getStatus(), now);
+    }
+    
+    private WebhookInboxEvent newEvent(String provider, String orderKey, String paymentId, String status, Instant now) {
+        WebhookInboxEvent event = new WebhookInboxEvent();
+        event.setId(UUID.randomUUID().toString());
+        event.setProvider(provider);
+        event.setOrderKey(orderKey);
+        event.setPaymentId(paymentId);
+        event.setPaymentStatus(status);
+        event.setStatus(WebhookInboxStatus.PENDING);
+        event.setReceivedAt(now);
+        event.setNextAttemptAt(now);
+        return event;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.ecommerce.store;
+
+import com.example.ecommerce.model.CartItem;
+
+import java.util.List;
+
+// Where carts live; selected with cart.store (mongo or memory)
+public interface CartStore {
+    
+    List<CartItem> findByUserId(String userId);
+    
+    // Adds quantity to the user's line for the product, creating the line if needed
+    CartItem addItem(String userId, String productId, int quantity);
+    
+    void clear(String userId);
+    
+    // True when every write is in MongoDB as soon as the call returns
+    boolean isWriteThrough();
+}
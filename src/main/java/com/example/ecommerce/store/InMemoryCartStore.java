@@ -0,0 +1,188 @@
+package com.example.ecommerce.store;
+
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.repository.CartRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Carts served from memory and written behind to cart_items in batches. Each user's cart has its own
+// lock, so users never contend with each other. A cart is loaded from MongoDB on first use, which is
+// how carts survive a restart. Carts are node-local, so requests of one user must reach the same node.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class InMemoryCartStore implements CartStore {
+    
+    private final CartRepository cartRepository;
+    private final Map<String, UserCart> carts = new ConcurrentHashMap<>();
+    private final Set<String> dirtyUserIds = ConcurrentHashMap.newKeySet();
+    
+    @Value("${cart.memory.flush-batch-size:500}")
+    private int flushBatchSize;
+    
+    @Value("${cart.memory.idle-eviction:30m}")
+    private Duration idleEviction;
+    
+    public InMemoryCartStore(CartRepository cartRepository) {
+        this.cartRepository = cartRepository;
+    }
+    
+    @Override
+    public List<CartItem> findByUserId(String userId) {
+        return withCart(userId, cart -> cart.items.values().stream().map(InMemoryCartStore::copy).toList());
+    }
+    
+    @Override
+    public CartItem addItem(String userId, String productId, int quantity) {
+        return withCart(userId, cart -> {
+            CartItem item = cart.items.computeIfAbsent(productId,
+                    key -> new CartItem(UUID.randomUUID().toString(), userId, productId, 0));
+            item.setQuantity(item.getQuantity() + quantity);
+            dirtyUserIds.add(userId);
+            return copy(item);
+        });
+    }
+    
+    // Also deleted right away: a cart cleared by checkout must not come back after a crash. The delete is part of
+    // the checkout transaction, so memory is only emptied once that commits; a rolled back checkout keeps the cart.
+    // Marking it dirty as well makes the next flush overwrite a snapshot that was taken before the clear.
+    @Override
+    public void clear(String userId) {
+        cartRepository.deleteByUserId(userId);
+        afterCommit(() -> withCart(userId, cart -> {
+            cart.items.clear();
+            dirtyUserIds.add(userId);
+            return null;
+        }));
+    }
+    
+    @Override
+    public boolean isWriteThrough() {
+        return false;
+    }
+    
+    // Writes the carts that are dirty when the run starts. Carts changed meanwhile wait for the next run, so
+    // steady add-to-cart traffic cannot keep one run going and idle carts still get evicted.
+    @Scheduled(fixedDelayString = "${cart.memory.flush-interval-ms:500}")
+    public void flush() {
+        List<String> due = new ArrayList<>(dirtyUserIds);
+        try {
+            for (int start = 0; start < due.size(); start += flushBatchSize) {
+                flushBatch(due.subList(start, Math.min(start + flushBatchSize, due.size())));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cart flush failed; retrying on the next run", e);
+        }
+        evictIdle();
+    }
+    
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    private void flushBatch(List<String> userIds) {
+        Map<String, List<CartItem>> batch = new HashMap<>();
+        for (String userId : userIds) {
+            if (!dirtyUserIds.remove(userId)) {
+                continue;
+            }
+            UserCart cart = carts.get(userId);
+            if (cart != null) {
+                synchronized (cart) {
+                    batch.put(userId, cart.items.values().stream().map(InMemoryCartStore::copy).toList());
+                }
+            }
+        }
+        try {
+            cartRepository.replaceCarts(batch);
+        } catch (RuntimeException e) {
+            // Nothing is lost: the carts are still in memory and get flushed again next time
+            dirtyUserIds.addAll(batch.keySet());
+            throw e;
+        }
+    }
+    
+    // Only clean carts are dropped; a dropped cart is simply reloaded on next use
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - idleEviction.toNanos();
+        for (Map.Entry<String, UserCart> entry : carts.entrySet()) {
+            UserCart cart = entry.getValue();
+            synchronized (cart) {
+                if (cart.lastAccess - cutoff < 0 && !dirtyUserIds.contains(entry.getKey())) {
+                    cart.evicted = true;
+                    carts.remove(entry.getKey(), cart);
+                }
+            }
+        }
+    }
+    
+    private <T> T withCart(String userId, Function<UserCart, T> action) {
+        while (true) {
+            UserCart cart = cart(userId);
+            synchronized (cart) {
+                // Lost a race with eviction; load the cart again
+                if (!cart.evicted) {
+                    cart.lastAccess = System.nanoTime();
+                    return action.apply(cart);
+                }
+            }
+        }
+    }
+    
+    private UserCart cart(String userId) {
+        UserCart cart = carts.get(userId);
+        if (cart != null) {
+            return cart;
+        }
+        // Loaded outside the map so a slow read does not block other users; the first load to land wins
+        UserCart loaded = new UserCart();
+        for (CartItem item : cartRepository.findByUserId(userId)) {
+            loaded.items.put(item.getProductId(), item);
+        }
+        UserCart existing = carts.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private static CartItem copy(CartItem item) {
+        return new CartItem(item.getId(), item.getUserId(), item.getProductId(), item.getQuantity());
+    }
+    
+    // Guarded by its own monitor
+    private static final class UserCart {
+        
+        private final Map<String, CartItem> items = new LinkedHashMap<>();
+        private long lastAccess = System.nanoTime();
+        private boolean evicted;
+    }
+}
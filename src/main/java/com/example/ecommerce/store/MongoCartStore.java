@@ -0,0 +1,37 @@
+package com.example.ecommerce.store;
+
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.repository.CartRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "cart.store", havingValue = "mongo", matchIfMissing = true)
+public class MongoCartStore implements CartStore {
+    
+    private final CartRepository cartRepository;
+    
+    @Override
+    public List<CartItem> findByUserId(String userId) {
+        return cartRepository.findByUserId(userId);
+    }
+    
+    @Override
+    public CartItem addItem(String userId, String productId, int quantity) {
+        return cartRepository.addQuantity(userId, productId, quantity);
+    }
+    
+    @Override
+    public void clear(String userId) {
+        cartRepository.deleteByUserId(userId);
+    }
+    
+    @Override
+    public boolean isWriteThrough() {
+        return true;
+    }
+}
@@ -2,63 +2,83 @@ package com.example.ecommerce.webhook;
 
 import com.example.ecommerce.dto.PaymentWebhookRequest;
 import com.example.ecommerce.dto.RazorpayWebhookRequest;
-import com.example.ecommerce.service.PaymentService;
 import com.example.ecommerce.service.RazorpayService;
-import lombok.RequiredArgsConstructor;
+import com.example.ecommerce.service.WebhookInboxService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpServletRequest;
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/webhooks")
-@RequiredArgsConstructor
 public class PaymentWebhookController {
     
-    private final PaymentService paymentService;
     private final RazorpayService razorpayService;
+    private final WebhookInboxService webhookInboxService;
+    
+    // Built once; readers are immutable and thread-safe
+    private final ObjectReader razorpayWebhookReader;
+    private final ObjectReader mockWebhookReader;
+    private final ObjectReader mockWebhookBatchReader;
     
     @Value("${payment.provider:mock}")
     private String paymentProvider;
     
+    public PaymentWebhookController(RazorpayService razorpayService,
+                                    WebhookInboxService webhookInboxService,
+                                    ObjectMapper objectMapper) {
+        this.razorpayService = razorpayService;
+        this.webhookInboxService = webhookInboxService;
+        this.razorpayWebhookReader = objectMapper.readerFor(RazorpayWebhookRequest.class);
+        this.mockWebhookReader = objectMapper.readerFor(PaymentWebhookRequest.class);
+        this.mockWebhookBatchReader = objectMapper.readerForListOf(PaymentWebhookRequest.class);
+    }
+    
+    // Webhooks are stored in the inbox and acknowledged with 202; WebhookInboxWorker applies them.
+    // The body is bound as raw bytes so the signature is checked over exactly what the provider signed.
     @PostMapping("/payment")
     public ResponseEntity<Map<String, String>> handlePaymentWebhook(
-            @RequestBody(required = false) Map<String, Object> requestBody,
-            HttpServletRequest httpRequest) {
+            @RequestBody(required = false) byte[] body,
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature) {
         try {
+            if (body == null || body.length == 0) {
+                throw new RuntimeException("Invalid webhook request");
+            }
+            
             // Handle Razorpay webhook
             if ("razorpay".equalsIgnoreCase(paymentProvider)) {
+                if (!isSigned(body, signature)) {
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(signatureError());
+                }
+                
                 // Try to parse as Razorpay webhook
+                RazorpayWebhookRequest razorpayRequest = null;
                 try {
-                    RazorpayWebhookRequest razorpayRequest = parseRazorpayWebhook(requestBody);
-                    return handleRazorpayWebhook(razorpayRequest, httpRequest);
-                } catch (Exception e) {
+                    razorpayRequest = razorpayWebhookReader.readValue(body);
+                } catch (IOException e) {
                     // Fall through to mock webhook handling
                 }
+                if (razorpayRequest != null) {
+                    return handleRazorpayWebhook(razorpayRequest);
+                }
             }
             
             // Handle Mock payment webhook
-            PaymentWebhookRequest request = parseMockWebhook(requestBody);
-            if (request != null) {
-                paymentService.handlePaymentWebhook(
-                        request.getOrderId(),
-                        request.getPaymentId(),
-                        request.getStatus()
-                );
-                
-                Map<String, String> response = new HashMap<>();
-                response.put("status", "success");
-                response.put("message", "Webhook processed successfully");
-                
-                return ResponseEntity.ok(response);
-            }
+            PaymentWebhookRequest request = mockWebhookReader.readValue(body);
+            webhookInboxService.enqueueMock(request);
             
-            throw new RuntimeException("Invalid webhook request");
+            Map<String, String> response = new HashMap<>();
+            response.put("status", "accepted");
+            response.put("message", "Webhook queued for processing");
+            
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
         } catch (Exception e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("status", "error");
@@ -68,82 +88,42 @@ public class PaymentWebhookController {
         }
     }
     
-    private PaymentWebhookRequest parseMockWebhook(Map<String, Object> requestBody) {
-        if (requestBody == null) return null;
-        
-        PaymentWebhookRequest request = new PaymentWebhookRequest();
-        if (requestBody.containsKey("orderId")) {
-            request.setOrderId((String) requestBody.get("orderId"));
-        }
-        if (requestBody.containsKey("paymentId")) {
-            request.setPaymentId((String) requestBody.get("paymentId"));
-        }
-        if (requestBody.containsKey("status")) {
-            request.setStatus((String) requestBody.get("status"));
+    // With the razorpay provider a batch must carry a valid signature as well, or it could mark any order paid
+    @PostMapping("/payment/batch")
+    public ResponseEntity<Map<String, Object>> handlePaymentWebhookBatch(
+            @RequestBody byte[] body,
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature) {
+        if ("razorpay".equalsIgnoreCase(paymentProvider) && !isSigned(body, signature)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new HashMap<>(signatureError()));
         }
-        if (requestBody.containsKey("amount")) {
-            Object amount = requestBody.get("amount");
-            if (amount instanceof Number) {
-                request.setAmount(((Number) amount).doubleValue());
-            }
+        List<PaymentWebhookRequest> events;
+        try {
+            events = mockWebhookBatchReader.readValue(body);
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid webhook request");
         }
-        return request;
+        webhookInboxService.enqueueMock(events);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "accepted");
+        response.put("accepted", events.size());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
     }
     
-    private RazorpayWebhookRequest parseRazorpayWebhook(Map<String, Object> requestBody) {
-        if (requestBody == null) return null;
-        
-        RazorpayWebhookRequest request = new RazorpayWebhookRequest();
-        if (requestBody.containsKey("event")) {
-            request.setEvent((String) requestBody.get("event"));
-        }
-        
-        if (requestBody.containsKey("payload")) {
-            Map<String, Object> payloadMap = (Map<String, Object>) requestBody.get("payload");
-            RazorpayWebhookRequest.RazorpayPayload payload = new RazorpayWebhookRequest.RazorpayPayload();
-            
-            if (payloadMap.containsKey("payment")) {
-                Map<String, Object> paymentMap = (Map<String, Object>) payloadMap.get("payment");
-                RazorpayWebhookRequest.RazorpayPayload.RazorpayPayment payment = 
-                    new RazorpayWebhookRequest.RazorpayPayload.RazorpayPayment();
-                
-                if (paymentMap.containsKey("id")) {
-                    payment.setId((String) paymentMap.get("id"));
-                }
-                if (paymentMap.containsKey("order_id")) {
-                    payment.setOrder_id((String) paymentMap.get("order_id"));
-                }
-                if (paymentMap.containsKey("status")) {
-                    payment.setStatus((String) paymentMap.get("status"));
-                }
-                if (paymentMap.containsKey("amount")) {
-                    Object amount = paymentMap.get("amount");
-                    if (amount instanceof Number) {
-                        payment.setAmount(((Number) amount).intValue());
-                    }
-                }
-                payload.setPayment(payment);
-            }
-            request.setPayload(payload);
-        }
-        
-        return request;
+    // A missing signature is rejected like a wrong one
+    private boolean isSigned(byte[] body, String signature) {
+        return signature != null && !signature.isBlank() && razorpayService.verifyWebhookSignature(body, signature);
     }
     
-    private ResponseEntity<Map<String, String>> handleRazorpayWebhook(
-            RazorpayWebhookRequest razorpayRequest, HttpServletRequest httpRequest) {
+    private static Map<String, String> signatureError() {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("status", "error");
+        errorResponse.put("message", "Missing or invalid webhook signature");
+        return errorResponse;
+    }
+    
+    private ResponseEntity<Map<String, String>> handleRazorpayWebhook(RazorpayWebhookRequest razorpayRequest) {
         try {
-            // Verify webhook signature
-            String signature = httpRequest.getHeader("X-Razorpay-Signature");
-            String payload = getRequestBody(httpRequest);
-            
-            if (signature != null && !razorpayService.verifyWebhookSignature(payload, signature)) {
-                Map<String, String> errorResponse = new HashMap<>();
-                errorResponse.put("status", "error");
-                errorResponse.put("message", "Invalid webhook signature");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
-            }
-            
             // Process payment.captured event
             if ("payment.captured".equals(razorpayRequest.getEvent()) &&
                 razorpayRequest.getPayload() != null &&
@@ -157,14 +137,14 @@ public class PaymentWebhookController {
                 String paymentId = payment.getId();
                 String status = "captured".equals(payment.getStatus()) ? "SUCCESS" : "FAILED";
                 
-                // Find payment by razorpay order ID (stored as paymentId in Payment entity)
-                paymentService.handleRazorpayWebhook(razorpayOrderId, paymentId, status);
+                // The signature was checked before parsing, so only authentic events reach the inbox
+                webhookInboxService.enqueueRazorpay(razorpayOrderId, paymentId, status);
                 
                 Map<String, String> response = new HashMap<>();
-                response.put("status", "success");
-                response.put("message", "Razorpay webhook processed successfully");
+                response.put("status", "accepted");
+                response.put("message", "Razorpay webhook queued for processing");
                 
-                return ResponseEntity.ok(response);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
             }
             
             Map<String, String> response = new HashMap<>();
@@ -179,18 +159,4 @@ public class PaymentWebhookController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
         }
     }
-    
-    private String getRequestBody(HttpServletRequest request) {
-        try {
-            StringBuilder sb = new StringBuilder();
-            BufferedReader reader = request.getReader();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            return "";
-        }
-    }
 }
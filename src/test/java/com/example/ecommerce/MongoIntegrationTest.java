@@ -0,0 +1,23 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+// Runs the application against a single-node MongoDB replica set, so transactions and change streams are real.
+// One container is shared by every test class, like the cached Spring context that points at it.
+// Skipped where Docker is not available.
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MongoIntegrationTest {
+    
+    @ServiceConnection
+    protected static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+    
+    @BeforeAll
+    static void startMongo() {
+        MONGO.start();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.ecommerce.client;
+
+import com.example.ecommerce.config.ResilienceConfig;
+import com.github.tomakehurst.wiremock.client.BasicCredentials;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// RazorpayApiClient against a local WireMock stub of the Razorpay API, with the circuit breaker and bulkhead
+// built by ResilienceConfig
+class RazorpayApiClientTest {
+    
+    @RegisterExtension
+    static WireMockExtension razorpay = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+    
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private RazorpayApiClient client;
+    
+    @BeforeEach
+    void setUp() {
+        ResilienceConfig resilienceConfig = new ResilienceConfig();
+        ReflectionTestUtils.setField(resilienceConfig, "failureRateThreshold", 50f);
+        ReflectionTestUtils.setField(resilienceConfig, "slowCallDuration", Duration.ofSeconds(3));
+        ReflectionTestUtils.setField(resilienceConfig, "slidingWindowSize", 4);
+        ReflectionTestUtils.setField(resilienceConfig, "openDuration", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(resilienceConfig, "maxConcurrentCalls", 1);
+        ReflectionTestUtils.setField(resilienceConfig, "maxWait", Duration.ZERO);
+        circuitBreaker = resilienceConfig.razorpayCircuitBreaker(resilienceConfig.circuitBreakerRegistry());
+        bulkhead = resilienceConfig.razorpayBulkhead(resilienceConfig.bulkheadRegistry());
+        
+        connectionManager = new PoolingHttpClientConnectionManager();
+        client = new RazorpayApiClient(connectionManager, circuitBreaker, bulkhead, razorpay.baseUrl() + "/v1",
+                Duration.ofSeconds(1), Duration.ofSeconds(1), "rzp_test_key", "rzp_test_secret");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        connectionManager.close();
+    }
+    
+    @Test
+    void createsAnOrder() {
+        razorpay.stubFor(post("/v1/orders").willReturn(okJson("{\"id\":\"order_1\",\"amount\":50000,\"currency\":\"INR\"}")));
+        
+        Map<String, Object> order = client.createOrder(Map.of("amount", 50000, "currency", "INR"));
+        
+        assertThat(order).containsEntry("id", "order_1");
+        razorpay.verify(postRequestedFor(urlEqualTo("/v1/orders"))
+                .withBasicAuth(new BasicCredentials("rzp_test_key", "rzp_test_secret"))
+                .withHeader("Content-Type", equalTo("application/json"))
+                .withRequestBody(equalToJson("{\"amount\":50000,\"currency\":\"INR\"}")));
+    }
+    
+    @Test
+    void surfacesServerErrorsAndCountsThemAsFailures() {
+        razorpay.stubFor(post("/v1/orders").willReturn(aResponse().withStatus(503)));
+        
+        assertThatThrownBy(() -> client.createOrder(Map.of("amount", 100))).isInstanceOf(HttpServerErrorException.class);
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+    }
+    
+    @Test
+    void doesNotCountClientErrorsAgainstRazorpay() {
+        razorpay.stubFor(post("/v1/orders").willReturn(aResponse().withStatus(400)));
+        
+        assertThatThrownBy(() -> client.createOrder(Map.of("amount", 100))).isInstanceOf(HttpClientErrorException.class);
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+    
+    @Test
+    void timesOutASlowResponse() {
+        razorpay.stubFor(post("/v1/orders").willReturn(okJson("{\"id\":\"order_1\"}").withFixedDelay(3000)));
+        
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> client.createOrder(Map.of("amount", 100))).isInstanceOf(ResourceAccessException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(2500));
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+    }
+    
+    @Test
+    void failsFastOnceTheCircuitIsOpen() {
+        razorpay.stubFor(post("/v1/orders").willReturn(aResponse().withStatus(500)));
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.createOrder(Map.of("amount", 100))).isInstanceOf(HttpServerErrorException.class);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        
+        assertThatThrownBy(() -> client.createOrder(Map.of("amount", 100))).isInstanceOf(CallNotPermittedException.class);
+        razorpay.verify(4, postRequestedFor(urlEqualTo("/v1/orders")));
+    }
+    
+    @Test
+    void rejectsCallsBeyondTheBulkhead() throws Exception {
+        razorpay.stubFor(post("/v1/orders").willReturn(okJson("{\"id\":\"order_1\"}").withFixedDelay(200)));
+        CompletableFuture<Map<String, Object>> first = CompletableFuture.supplyAsync(() -> client.createOrder(Map.of("amount", 100)));
+        while (bulkhead.getMetrics().getAvailableConcurrentCalls() > 0) {
+            Thread.onSpinWait();
+        }
+        
+        assertThatThrownBy(() -> client.createOrder(Map.of("amount", 100))).isInstanceOf(BulkheadFullException.class);
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsEntry("id", "order_1");
+        razorpay.verify(1, postRequestedFor(urlEqualTo("/v1/orders")));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.MongoIntegrationTest;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Orders per second for concurrent checkouts of one product, whose stock decrements conflict inside their
+// transactions. Run once without transaction retries (each WriteConflict fails the checkout) and once with them.
+// mvn -Pbenchmark test -Dtest=CheckoutThroughputBenchmark
+class CheckoutThroughputBenchmark extends MongoIntegrationTest {
+    
+    private static final int THREADS = 64;
+    private static final int ORDERS = 2000;
+    
+    @Autowired
+    private OrderService orderService;
+    
+    @Autowired
+    private CartService cartService;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private TransactionRunner transactionRunner;
+    
+    @Test
+    void checkoutsOfOneProduct() throws Exception {
+        int configuredAttempts = (int) ReflectionTestUtils.getField(transactionRunner, "maxAttempts");
+        try {
+            ReflectionTestUtils.setField(transactionRunner, "maxAttempts", 1);
+            Result withoutRetries = run();
+            ReflectionTestUtils.setField(transactionRunner, "maxAttempts", configuredAttempts);
+            Result withRetries = run();
+            
+            System.out.printf("%nCheckouts of one product, %d threads, %d orders%n", THREADS, ORDERS);
+            System.out.printf("  without retries:         %s%n", withoutRetries);
+            System.out.printf("  with retries (%d attempts): %s%n", configuredAttempts, withRetries);
+            assertThat(withRetries.placed()).isGreaterThanOrEqualTo(withoutRetries.placed());
+        } finally {
+            ReflectionTestUtils.setField(transactionRunner, "maxAttempts", configuredAttempts);
+        }
+    }
+    
+    private Result run() throws Exception {
+        Product product = productRepository.insert(new Product(UUID.randomUUID().toString(), "Benchmark product",
+                null, 10.0, ORDERS, null));
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            String userId = UUID.randomUUID().toString();
+            cartService.addToCart(new AddToCartRequest(userId, product.getId(), 1));
+            userIds.add(userId);
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Boolean>> checkouts = userIds.stream()
+                    .<Callable<Boolean>>map(userId -> () -> {
+                        try {
+                            orderService.createOrder(new CreateOrderRequest(userId));
+                            return true;
+                        } catch (RuntimeException e) {
+                            // Without retries the WriteConflict reaches the caller; with them only exhausted retries do
+                            return false;
+                        }
+                    })
+                    .toList();
+            long started = System.nanoTime();
+            int placed = 0;
+            for (Future<Boolean> checkout : executor.invokeAll(checkouts)) {
+                if (checkout.get()) {
+                    placed++;
+                }
+            }
+            long elapsedNanos = System.nanoTime() - started;
+            
+            int stock = productRepository.findById(product.getId()).orElseThrow().getStock();
+            assertThat(stock).isEqualTo(ORDERS - placed);
+            return new Result(placed, ORDERS - placed, elapsedNanos);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private record Result(int placed, int failed, long elapsedNanos) {
+        
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("%d placed, %d failed in %.2fs = %.0f orders/s", placed, failed, seconds, placed / seconds);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.ecommerce.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RazorpayServiceTest {
+    
+    private static final String SECRET = "test_webhook_secret";
+    private static final byte[] BODY = "{\"event\":\"payment.captured\",\"payload\":{}}".getBytes(StandardCharsets.UTF_8);
+    
+    private RazorpayService razorpayService;
+    
+    @BeforeEach
+    void setUp() {
+        razorpayService = new RazorpayService(null);
+        ReflectionTestUtils.setField(razorpayService, "webhookSecret", SECRET);
+    }
+    
+    @Test
+    void acceptsTheSignatureOfTheExactBody() {
+        assertThat(razorpayService.verifyWebhookSignature(BODY, sign(BODY))).isTrue();
+    }
+    
+    @Test
+    void acceptsUpperCaseHexAndSurroundingWhitespace() {
+        assertThat(razorpayService.verifyWebhookSignature(BODY, " " + sign(BODY).toUpperCase(Locale.ROOT) + " ")).isTrue();
+    }
+    
+    @Test
+    void rejectsATamperedBody() {
+        byte[] tampered = "{\"event\":\"payment.captured\",\"payload\":{} }".getBytes(StandardCharsets.UTF_8);
+        assertThat(razorpayService.verifyWebhookSignature(tampered, sign(BODY))).isFalse();
+    }
+    
+    @Test
+    void rejectsASignatureMadeWithAnotherSecret() {
+        assertThat(razorpayService.verifyWebhookSignature(BODY, sign(BODY, "other_secret"))).isFalse();
+    }
+    
+    @Test
+    void rejectsTruncatedAndEmptySignatures() {
+        String signature = sign(BODY);
+        assertThat(razorpayService.verifyWebhookSignature(BODY, signature.substring(0, signature.length() - 1))).isFalse();
+        assertThat(razorpayService.verifyWebhookSignature(BODY, "")).isFalse();
+    }
+    
+    // Verification is safe to share: concurrent callers each get their own Mac
+    @Test
+    void verifiesConcurrently() {
+        String signature = sign(BODY);
+        assertThat(IntStream.range(0, 10_000).parallel()
+                .allMatch(i -> razorpayService.verifyWebhookSignature(BODY, signature))).isTrue();
+    }
+    
+    static String sign(byte[] body) {
+        return sign(body, SECRET);
+    }
+    
+    static String sign(byte[] body, String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
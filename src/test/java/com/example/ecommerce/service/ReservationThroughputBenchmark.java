@@ -0,0 +1,85 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.MongoIntegrationTest;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.ReservationStatus;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.StockReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Reservations per second on one hot SKU from 1,000 concurrent clients. The SKU has less stock than requests,
+// so the run covers holds taken while stock lasts and requests turned away by the counter once it is sold out.
+// mvn -Pbenchmark test -Dtest=ReservationThroughputBenchmark
+class ReservationThroughputBenchmark extends MongoIntegrationTest {
+    
+    private static final int CLIENTS = 1000;
+    private static final int REQUESTS = 20000;
+    private static final int STOCK = 5000;
+    
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+    
+    @Test
+    void reservationsOnOneHotSku() throws Exception {
+        Product product = productRepository.insert(new Product(UUID.randomUUID().toString(), "Hot SKU",
+                null, 10.0, STOCK, null));
+        
+        List<Callable<Boolean>> requests = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            String userId = UUID.randomUUID().toString();
+            requests.add(() -> {
+                try {
+                    inventoryReservationService.reserve(userId, product.getId(), 1);
+                    return true;
+                } catch (RuntimeException e) {
+                    // Sold out, or lost the guarded decrement to another client
+                    return false;
+                }
+            });
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            long started = System.nanoTime();
+            int held = 0;
+            for (Future<Boolean> request : executor.invokeAll(requests)) {
+                if (request.get()) {
+                    held++;
+                }
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            
+            System.out.printf("%nReservations on one hot SKU, %d clients, %d requests, stock %d%n", CLIENTS, REQUESTS, STOCK);
+            System.out.printf("  %d held, %d turned away in %.2fs = %.0f requests/s, %.0f holds/s%n",
+                    held, REQUESTS - held, seconds, REQUESTS / seconds, held / seconds);
+            
+            int stock = productRepository.findById(product.getId()).orElseThrow().getStock();
+            long holds = stockReservationRepository.findAll().stream()
+                    .filter(reservation -> reservation.getProductId().equals(product.getId()))
+                    .filter(reservation -> reservation.getStatus() == ReservationStatus.HELD)
+                    .count();
+            assertThat(held).isLessThanOrEqualTo(STOCK);
+            assertThat(holds).isEqualTo(held);
+            assertThat(stock).isEqualTo(STOCK - held);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
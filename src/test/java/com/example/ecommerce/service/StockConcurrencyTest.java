@@ -0,0 +1,130 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.MongoIntegrationTest;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.exception.TransactionRetryException;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 64 buyers race for one SKU with less stock than buyers: exactly the stock is sold and it never goes negative
+class StockConcurrencyTest extends MongoIntegrationTest {
+    
+    private static final int BUYERS = 64;
+    private static final int STOCK = 20;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private OrderService orderService;
+    
+    @Autowired
+    private CartService cartService;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private OrderRepository orderRepository;
+    
+    @Test
+    void guardedDecrementNeverOversells() throws Exception {
+        Product product = newProduct();
+        
+        int sold = race(buyer -> {
+            try {
+                productService.updateProductStock(product.getId(), 1);
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        });
+        
+        assertThat(sold).isEqualTo(STOCK);
+        assertThat(stockOf(product)).isZero();
+    }
+    
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        Product product = newProduct();
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            String userId = UUID.randomUUID().toString();
+            cartService.addToCart(new AddToCartRequest(userId, product.getId(), 1));
+            userIds.add(userId);
+        }
+        
+        int placed = race(buyer -> {
+            // A client retries a 409, as it would over HTTP; running out of stock is final
+            while (true) {
+                try {
+                    orderService.createOrder(new CreateOrderRequest(userIds.get(buyer)));
+                    return true;
+                } catch (TransactionRetryException e) {
+                    // Lost to concurrent checkouts every time; try again
+                } catch (RuntimeException e) {
+                    return false;
+                }
+            }
+        });
+        
+        assertThat(placed).isEqualTo(STOCK);
+        assertThat(stockOf(product)).isZero();
+        long orders = userIds.stream().mapToLong(userId -> orderRepository.findByUserId(userId).size()).sum();
+        assertThat(orders).isEqualTo(STOCK);
+    }
+    
+    private Product newProduct() {
+        return productRepository.insert(new Product(UUID.randomUUID().toString(), "Limited edition", null, 99.0, STOCK, null));
+    }
+    
+    private int stockOf(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getStock();
+    }
+    
+    // Starts every buyer at once and returns how many succeeded
+    private int race(Buyer buyer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < BUYERS; i++) {
+                int index = i;
+                results.add(executor.submit((Callable<Boolean>) () -> {
+                    start.await();
+                    return buyer.buy(index);
+                }));
+            }
+            start.countDown();
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    succeeded++;
+                }
+            }
+            return succeeded;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private interface Buyer {
+        
+        boolean buy(int index);
+    }
+}
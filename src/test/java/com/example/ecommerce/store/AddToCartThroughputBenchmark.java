@@ -0,0 +1,92 @@
+package com.example.ecommerce.store;
+
+import com.example.ecommerce.MongoIntegrationTest;
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.repository.CartRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Add-to-cart operations per second through each CartStore: every add an upsert in cart_items, or served from
+// memory with the write-behind flush running on its usual interval alongside.
+// mvn -Pbenchmark test -Dtest=AddToCartThroughputBenchmark
+class AddToCartThroughputBenchmark extends MongoIntegrationTest {
+    
+    private static final int THREADS = 64;
+    private static final int USERS = 5000;
+    private static final int ADDS_PER_USER = 20;
+    private static final String[] PRODUCT_IDS = {"p1", "p2", "p3", "p4"};
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Test
+    void addToCart() throws Exception {
+        double mongo = run(new MongoCartStore(cartRepository), null);
+        
+        InMemoryCartStore memoryStore = new InMemoryCartStore(cartRepository);
+        ReflectionTestUtils.setField(memoryStore, "flushBatchSize", 500);
+        ReflectionTestUtils.setField(memoryStore, "idleEviction", Duration.ofMinutes(30));
+        double memory = run(memoryStore, memoryStore);
+        
+        System.out.printf("%nAdd to cart, %d threads, %d users x %d adds%n", THREADS, USERS, ADDS_PER_USER);
+        System.out.printf("  mongo store:  %.0f ops/s%n", mongo);
+        System.out.printf("  memory store: %.0f ops/s%n", memory);
+    }
+    
+    private double run(CartStore store, InMemoryCartStore flushed) throws Exception {
+        List<String> userIds = new ArrayList<>();
+        List<Callable<Void>> adds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String userId = UUID.randomUUID().toString();
+            userIds.add(userId);
+            for (int add = 0; add < ADDS_PER_USER; add++) {
+                String productId = PRODUCT_IDS[add % PRODUCT_IDS.length];
+                adds.add(() -> {
+                    store.addItem(userId, productId, 1);
+                    return null;
+                });
+            }
+        }
+        
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+        if (flushed != null) {
+            flusher.scheduleWithFixedDelay(flushed::flush, 500, 500, TimeUnit.MILLISECONDS);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        try {
+            for (Future<Void> add : executor.invokeAll(adds)) {
+                add.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        flusher.shutdown();
+        flusher.awaitTermination(1, TimeUnit.MINUTES);
+        if (flushed != null) {
+            flushed.flush();
+        }
+        
+        // Every add is in cart_items once the last flush is done
+        for (String userId : userIds.subList(0, 100)) {
+            int quantity = cartRepository.findByUserId(userId).stream().mapToInt(CartItem::getQuantity).sum();
+            assertThat(quantity).isEqualTo(ADDS_PER_USER);
+        }
+        return adds.size() / (elapsedNanos / 1e9);
+    }
+}
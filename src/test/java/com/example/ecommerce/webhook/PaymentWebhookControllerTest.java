@@ -0,0 +1,120 @@
+package com.example.ecommerce.webhook;
+
+import com.example.ecommerce.client.RazorpayApiClient;
+import com.example.ecommerce.dto.PaymentWebhookRequest;
+import com.example.ecommerce.service.RazorpayService;
+import com.example.ecommerce.service.WebhookInboxService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Signature checks of the webhook endpoints under the razorpay provider, with the real HMAC verification
+@WebMvcTest(controllers = PaymentWebhookController.class, properties = {
+        "payment.provider=razorpay",
+        "payment.razorpay.key_id=rzp_test_key",
+        "payment.razorpay.webhook.secret=" + PaymentWebhookControllerTest.SECRET
+})
+@Import(RazorpayService.class)
+class PaymentWebhookControllerTest {
+    
+    static final String SECRET = "test_webhook_secret";
+    private static final String CAPTURED = """
+            {"event":"payment.captured","payload":{"payment":{"id":"pay_1","order_id":"order_1","status":"captured"}}}""";
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @MockBean
+    private WebhookInboxService webhookInboxService;
+    
+    @MockBean
+    private RazorpayApiClient razorpayApiClient;
+    
+    @Test
+    void queuesAValidlySignedWebhook() throws Exception {
+        mockMvc.perform(post("/api/webhooks/payment")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(CAPTURED)
+                        .header("X-Razorpay-Signature", sign(CAPTURED)))
+                .andExpect(status().isAccepted());
+        verify(webhookInboxService).enqueueRazorpay("order_1", "pay_1", "SUCCESS");
+    }
+    
+    @Test
+    void rejectsATamperedBody() throws Exception {
+        String tampered = CAPTURED.replace("pay_1", "pay_2");
+        mockMvc.perform(post("/api/webhooks/payment")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(tampered)
+                        .header("X-Razorpay-Signature", sign(CAPTURED)))
+                .andExpect(status().isUnauthorized());
+        verifyNoInteractions(webhookInboxService);
+    }
+    
+    @Test
+    void rejectsAMissingSignature() throws Exception {
+        mockMvc.perform(post("/api/webhooks/payment")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(CAPTURED))
+                .andExpect(status().isUnauthorized());
+        verifyNoInteractions(webhookInboxService);
+    }
+    
+    @Test
+    void rejectsABlankSignature() throws Exception {
+        mockMvc.perform(post("/api/webhooks/payment")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(CAPTURED)
+                        .header("X-Razorpay-Signature", " "))
+                .andExpect(status().isUnauthorized());
+        verifyNoInteractions(webhookInboxService);
+    }
+    
+    @Test
+    void rejectsAnUnsignedBatch() throws Exception {
+        mockMvc.perform(post("/api/webhooks/payment/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"orderId\":\"o1\",\"paymentId\":\"p1\",\"status\":\"SUCCESS\"}]"))
+                .andExpect(status().isUnauthorized());
+        verify(webhookInboxService, never()).enqueueMock(anyList());
+        verify(webhookInboxService, never()).enqueueMock(any(PaymentWebhookRequest.class));
+    }
+    
+    @Test
+    void queuesASignedBatch() throws Exception {
+        String batch = "[{\"orderId\":\"o1\",\"paymentId\":\"p1\",\"status\":\"SUCCESS\"}]";
+        mockMvc.perform(post("/api/webhooks/payment/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch)
+                        .header("X-Razorpay-Signature", sign(batch)))
+                .andExpect(status().isAccepted());
+        verify(webhookInboxService).enqueueMock(anyList());
+    }
+    
+    private static String sign(String body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.ecommerce.webhook;
+
+import com.example.ecommerce.dto.RazorpayWebhookRequest;
+import com.example.ecommerce.service.RazorpayService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// Cost of accepting a Razorpay webhook: HMAC verification over the raw bytes and parsing with the precompiled
+// ObjectReader, against the previous path of decoding the body to a String and parsing it through the ObjectMapper.
+// mvn -Pbenchmark test -Dtest=WebhookParseVerifyBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class WebhookParseVerifyBenchmark {
+    
+    private static final String SECRET = "benchmark_webhook_secret";
+    
+    private byte[] body;
+    private String signature;
+    private RazorpayService razorpayService;
+    private ObjectMapper objectMapper;
+    private ObjectReader reader;
+    
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        body = ("{\"entity\":\"event\",\"account_id\":\"acc_1\",\"event\":\"payment.captured\",\"contains\":[\"payment\"],"
+                + "\"payload\":{\"payment\":{\"id\":\"pay_29QQoUBi66xm2f\",\"order_id\":\"order_9A33XWu170gUtm\","
+                + "\"status\":\"captured\",\"amount\":50000,\"currency\":\"INR\",\"method\":\"card\","
+                + "\"description\":\"Order payment\",\"email\":\"buyer@example.com\",\"contact\":\"+919000090000\"}},"
+                + "\"created_at\":1700000000}").getBytes(StandardCharsets.UTF_8);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        signature = HexFormat.of().formatHex(mac.doFinal(body));
+        
+        razorpayService = new RazorpayService(null);
+        ReflectionTestUtils.setField(razorpayService, "webhookSecret", SECRET);
+        objectMapper = new ObjectMapper();
+        reader = objectMapper.readerFor(RazorpayWebhookRequest.class);
+    }
+    
+    @Benchmark
+    public boolean verify() {
+        return razorpayService.verifyWebhookSignature(body, signature);
+    }
+    
+    @Benchmark
+    public RazorpayWebhookRequest parseWithReader() throws IOException {
+        return reader.readValue(body);
+    }
+    
+    @Benchmark
+    public RazorpayWebhookRequest parseStringWithMapper() throws IOException {
+        return objectMapper.readValue(new String(body, StandardCharsets.UTF_8), RazorpayWebhookRequest.class);
+    }
+    
+    @Benchmark
+    public RazorpayWebhookRequest verifyAndParse() throws IOException {
+        return razorpayService.verifyWebhookSignature(body, signature) ? reader.readValue(body) : null;
+    }
+    
+    @Test
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder().include(WebhookParseVerifyBenchmark.class.getName()).build()).run();
+    }
+}